@@ -0,0 +1,236 @@
+package sources.IOHandlers.receiver;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The CollectionFileInput class gives the XML readers random and streamed access to the bytes of the collection
+ * file. The bytes are either read with positional FileChannel reads or taken straight from a memory mapping of the
+ * file, in which case they are never copied into the heap before the parser sees them and the page cache serves
+ * repeated loads. Files larger than 2 GB are mapped as several segments.
+ * <p>
+ * Streams opened on the same input may be read from different threads at the same time.
+ */
+abstract class CollectionFileInput implements Closeable {
+    private static final int SEGMENT_BITS = 30;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Opens the file at the specified path.
+     *
+     * @param path the path of the file
+     * @param mapped whether the file should be memory-mapped
+     * @return the input over the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    static CollectionFileInput open(String path, boolean mapped) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+        if (!mapped)
+            return new ChannelInput(channel);
+        try (channel) {
+            return new MappedInput(channel);
+        }
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     *
+     * @return the size of the file
+     * @throws IOException if the size cannot be read
+     */
+    abstract long size() throws IOException;
+
+    /**
+     * Copies a range of the file into a new array.
+     *
+     * @param position the offset of the first byte
+     * @param length the number of bytes
+     * @return the bytes of the range
+     * @throws IOException if the file cannot be read or ends before the range does
+     */
+    abstract byte[] read(long position, int length) throws IOException;
+
+    /**
+     * Opens a stream over a range of the file.
+     *
+     * @param from the offset of the first byte
+     * @param to the offset after the last byte
+     * @return a stream that ends at the end of the range
+     */
+    abstract InputStream openStream(long from, long to);
+
+    /**
+     * Reads the file with positional reads, which do not move the position of the channel.
+     */
+    private static final class ChannelInput extends CollectionFileInput {
+        private final FileChannel channel;
+
+        private ChannelInput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        byte[] read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                    throw new EOFException();
+            }
+            return buffer.array();
+        }
+
+        @Override
+        InputStream openStream(long from, long to) {
+            return new InputStream() {
+                private final ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE).limit(0);
+                private long position = from;
+
+                @Override
+                public int read() throws IOException {
+                    if (!fill())
+                        return -1;
+                    return buffer.get() & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    if (length == 0)
+                        return 0;
+                    if (!fill())
+                        return -1;
+                    int count = Math.min(length, buffer.remaining());
+                    buffer.get(bytes, offset, count);
+                    return count;
+                }
+
+                private boolean fill() throws IOException {
+                    if (buffer.hasRemaining())
+                        return true;
+                    if (position >= to)
+                        return false;
+                    buffer.clear().limit((int) Math.min(STREAM_BUFFER_SIZE, to - position));
+                    int count = channel.read(buffer, position);
+                    if (count < 0)
+                        throw new EOFException();
+                    position += count;
+                    buffer.flip();
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the file from read-only mappings of 1 GB segments. Only absolute gets are used on the shared
+     * buffers, so they are safe to read concurrently. A mapping stays valid after the channel is closed and
+     * is released when it becomes unreachable.
+     */
+    private static final class MappedInput extends CollectionFileInput {
+        private final MappedByteBuffer[] segments;
+        private final long size;
+
+        private MappedInput(FileChannel channel) throws IOException {
+            size = channel.size();
+            long segmentSize = 1L << SEGMENT_BITS;
+            segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        byte[] read(long position, int length) throws IOException {
+            if (position + length > size)
+                throw new EOFException();
+            byte[] bytes = new byte[length];
+            copy(position, bytes, 0, length);
+            return bytes;
+        }
+
+        @Override
+        InputStream openStream(long from, long to) {
+            return new InputStream() {
+                private long position = from;
+
+                @Override
+                public int read() {
+                    if (position >= to)
+                        return -1;
+                    byte b = segments[(int) (position >>> SEGMENT_BITS)].get(offset(position));
+                    position += 1;
+                    return b & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    if (length == 0)
+                        return 0;
+                    if (position >= to)
+                        return -1;
+                    int count = (int) Math.min(length, to - position);
+                    copy(position, bytes, offset, count);
+                    position += count;
+                    return count;
+                }
+
+                @Override
+                public long skip(long count) {
+                    long skipped = Math.max(0, Math.min(count, to - position));
+                    position += skipped;
+                    return skipped;
+                }
+
+                @Override
+                public int available() {
+                    return (int) Math.min(Integer.MAX_VALUE, to - position);
+                }
+            };
+        }
+
+        /**
+         * Copies bytes of the file into the array, crossing segment borders where needed.
+         */
+        private void copy(long position, byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+                int start = offset(position);
+                int count = Math.min(length, segment.limit() - start);
+                segment.get(start, bytes, offset, count);
+                position += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        private static int offset(long position) {
+            return (int) (position & ((1L << SEGMENT_BITS) - 1));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package sources.IOHandlers.receiver;
+
+import sources.exceptions.io.FilePermissionException;
+import sources.exceptions.io.InvalidFileDataException;
+import sources.models.Movie;
+import sources.receiver.MovieCollection;
+import sources.receiver.StorageMode;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MovieCollectionParallelFileReader class reads a movie collection from an XML file on several threads.
+ * The file is cut into chunks at movie start tags, the chunks are parsed and validated concurrently on a
+ * pool of threads of the reader's own, since parsing blocks on file reads, and the parsed movies are added to
+ * the collection in file order on the calling thread, where directors are interned and IDs and passport IDs are
+ * checked for uniqueness. The result does not depend on the number of threads.
+ * <p>
+ * Chunks have a bounded size and only a few chunks per thread are parsed ahead of the one being added, so the
+ * memory taken by parsed movies does not grow with the size of the file. Every thread parses with an
+ * XMLInputFactory of its own, since factories are not guaranteed to be thread-safe.
+ * <p>
+ * Any file the chunks cannot be parsed from as is, including every file with invalid data, is read again
+ * with the serial streaming reader, so errors are reported exactly as the serial reader reports them.
+ * The serial reader is also used right away when a single thread is requested.
+ */
+public class MovieCollectionParallelFileReader implements MovieCollectionFileReader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 22;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+    private static final int WINDOW_SIZE = 1 << 16;
+    private static final byte[] MOVIE_START_TAG = "<movie".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNK_START_TAG = "<chunk>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNK_END_TAG = "</chunk>".getBytes(StandardCharsets.US_ASCII);
+
+    private final String path;
+    private final StorageMode storageMode;
+    private final int parallelism;
+    private final boolean mapped;
+    private final MovieCollectionStAXFileReader serialReader;
+    private final ThreadLocal<XMLInputFactory> factories =
+            ThreadLocal.withInitial(MovieCollectionParallelFileReader::createFactory);
+
+    public MovieCollectionParallelFileReader(String path) {
+        this(path, StorageMode.HEAP);
+    }
+
+    public MovieCollectionParallelFileReader(String path, StorageMode storageMode) {
+        this(path, storageMode, false);
+    }
+
+    public MovieCollectionParallelFileReader(String path, StorageMode storageMode, boolean mapped) {
+        this(path, storageMode, mapped, Runtime.getRuntime().availableProcessors());
+    }
+
+    public MovieCollectionParallelFileReader(String path, StorageMode storageMode, boolean mapped, int parallelism) {
+        this.path = path;
+        this.storageMode = storageMode;
+        this.mapped = mapped;
+        this.parallelism = parallelism;
+        this.serialReader = new MovieCollectionStAXFileReader(path, storageMode, mapped);
+    }
+
+    @Override
+    public MovieCollection read() throws FileNotFoundException, FilePermissionException, InvalidFileDataException {
+        checkFile();
+        File file = new File(path);
+        if (file.length() == 0 || parallelism < 2)
+            return serialReader.read();
+
+        MovieCollection movieCollection = new MovieCollection(storageMode);
+        try (CollectionFileInput fileInput = CollectionFileInput.open(path, mapped)) {
+            long size = fileInput.size();
+            byte[] head = fileInput.read(0, (int) Math.min(size, WINDOW_SIZE));
+            XMLStreamReader reader = factories.get().createXMLStreamReader(new ByteArrayInputStream(head));
+            ZonedDateTime collectionCreationDate;
+            String rootName;
+            try {
+                reader.nextTag();
+                String encoding = reader.getCharacterEncodingScheme();
+                if (encoding != null && !encoding.equalsIgnoreCase("UTF-8"))
+                    return serialReader.read();
+                rootName = reader.getLocalName();
+                collectionCreationDate = serialReader.readHeader(reader, movieCollection);
+            } finally {
+                reader.close();
+            }
+
+            long[] boundaries = findChunkBoundaries(fileInput, size, head, rootName);
+            if (boundaries == null)
+                return serialReader.read();
+
+            if (!readChunks(fileInput, boundaries, movieCollection))
+                return serialReader.read();
+            movieCollection.setCreationDate(collectionCreationDate);
+            return movieCollection;
+        } catch (XMLStreamException e) {
+            return serialReader.read();
+        } catch (IOException e) {
+            throw new InvalidFileDataException(path, e.getMessage());
+        }
+    }
+
+    /**
+     * Cuts the part of the file between the root tags into chunks that start at movie start tags.
+     * Only whitespace may precede the first movie and only the end tag of the root element may follow
+     * the last chunk; otherwise the file is left to the serial reader.
+     *
+     * @param fileInput the input over the file
+     * @param size the size of the file
+     * @param head the first bytes of the file
+     * @param rootName the name of the root element
+     * @return the offsets the chunks start at followed by the offset the last chunk ends at,
+     * or null if the file should be read serially
+     * @throws IOException if the file cannot be read
+     */
+    private long[] findChunkBoundaries(CollectionFileInput fileInput, long size, byte[] head, String rootName) throws IOException {
+        int rootStart = indexOf(head, ("<" + rootName).getBytes(StandardCharsets.UTF_8), 0);
+        int rootEnd = rootStart < 0 ? -1 : indexOf(head, new byte[]{'>'}, rootStart);
+        if (rootEnd < 0 || head[rootEnd - 1] == '/')
+            return null;
+        long end = findRootEndTag(fileInput, size, rootName);
+        if (end < 0)
+            return null;
+        long first = findMovieStartTag(fileInput, rootEnd + 1, end);
+        if (first < 0)
+            return null;
+        byte[] gap = fileInput.read(rootEnd + 1, (int) (first - rootEnd - 1));
+        for (byte b : gap) {
+            if (!isWhitespace(b))
+                return null;
+        }
+
+        long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                Math.max(MIN_CHUNK_SIZE, (end - first) / ((long) parallelism * CHUNKS_PER_THREAD)));
+        ArrayList<Long> boundaries = new ArrayList<>();
+        boundaries.add(first);
+        long next = first + chunkSize;
+        while (next < end) {
+            long boundary = findMovieStartTag(fileInput, next, end);
+            if (boundary < 0)
+                break;
+            boundaries.add(boundary);
+            next = boundary + chunkSize;
+        }
+        boundaries.add(end);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Finds the end tag of the root element, which must be the last thing in the file but whitespace.
+     *
+     * @return the offset of the end tag, or -1 if the file does not end with it
+     */
+    private long findRootEndTag(CollectionFileInput fileInput, long size, String rootName) throws IOException {
+        int length = (int) Math.min(size, WINDOW_SIZE);
+        byte[] tail = fileInput.read(size - length, length);
+        int position = tail.length - 1;
+        while (position >= 0 && isWhitespace(tail[position]))
+            position -= 1;
+        if (position < 0 || tail[position] != '>')
+            return -1;
+        position -= 1;
+        while (position >= 0 && isWhitespace(tail[position]))
+            position -= 1;
+        byte[] endTag = ("</" + rootName).getBytes(StandardCharsets.UTF_8);
+        int start = position + 1 - endTag.length;
+        if (start < 0 || indexOf(tail, endTag, start) != start)
+            return -1;
+        return size - length + start;
+    }
+
+    /**
+     * Finds the first movie start tag at or after the specified offset. The tag is told apart from the tags
+     * of other elements whose names start with "movie" by the character that follows the name.
+     *
+     * @return the offset of the tag, or -1 if there is none before the limit
+     */
+    private long findMovieStartTag(CollectionFileInput fileInput, long from, long limit) throws IOException {
+        long position = from;
+        while (position < limit) {
+            int length = (int) Math.min(WINDOW_SIZE, limit - position);
+            byte[] window = fileInput.read(position, length);
+            int index = 0;
+            while ((index = indexOf(window, MOVIE_START_TAG, index)) >= 0) {
+                int next = index + MOVIE_START_TAG.length;
+                if (next >= window.length)
+                    break;
+                if (window[next] == '>' || window[next] == '/' || isWhitespace(window[next]))
+                    return position + index;
+                index += 1;
+            }
+            if (position + length >= limit)
+                break;
+            position += length - MOVIE_START_TAG.length;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the chunks on a pool of its own and adds their movies to the collection in file order. Only
+     * CHUNKS_AHEAD_PER_THREAD chunks per thread are submitted ahead of the chunk being added. Before returning,
+     * chunks not started yet are cancelled and the running ones are waited for, so that no task reads the file
+     * after it is closed.
+     *
+     * @param fileInput the input over the file
+     * @param boundaries the offsets the chunks start at followed by the offset the last chunk ends at
+     * @param movieCollection the collection to add the movies to
+     * @return true if every chunk was parsed, false if the file should be read serially
+     * @throws InvalidFileDataException if a parsed movie cannot be added to the collection
+     */
+    private boolean readChunks(CollectionFileInput fileInput, long[] boundaries, MovieCollection movieCollection)
+            throws InvalidFileDataException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "collection-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<List<Movie>>> chunks = new ArrayDeque<>();
+        int chunkCount = boundaries.length - 1;
+        int submitted = 0;
+        int number = 0;
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                while (submitted < chunkCount && submitted <= i + parallelism * CHUNKS_AHEAD_PER_THREAD) {
+                    long from = boundaries[submitted];
+                    long to = boundaries[submitted + 1];
+                    chunks.addLast(executor.submit(() -> parseChunk(fileInput, from, to)));
+                    submitted += 1;
+                }
+                List<Movie> movies = join(chunks.pollFirst());
+                if (movies == null)
+                    return false;
+                for (Movie movie : movies) {
+                    number += 1;
+                    serialReader.add(movieCollection, movie, number);
+                }
+            }
+            return true;
+        } finally {
+            for (Future<List<Movie>> chunk : chunks) {
+                chunk.cancel(false);
+            }
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Waits for the movies of a chunk.
+     *
+     * @return the movies of the chunk, or null if the chunk could not be parsed
+     * @throws InvalidFileDataException if the calling thread is interrupted while waiting
+     */
+    private List<Movie> join(Future<List<Movie>> chunk) throws InvalidFileDataException {
+        try {
+            return chunk.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidFileDataException(path, "reading was interrupted");
+        }
+    }
+
+    /**
+     * Waits until every task of the executor has finished. An interrupt does not stop the wait, since the
+     * tasks still read the file, but is restored afterwards.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        boolean terminated = false;
+        while (!terminated) {
+            try {
+                terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Parses the movies of one chunk. Runs on a thread of the pool.
+     *
+     * @return the movies of the chunk in file order, or null if the chunk is not valid
+     */
+    private List<Movie> parseChunk(CollectionFileInput fileInput, long from, long to) {
+        try {
+            InputStream input = new SequenceInputStream(new ByteArrayInputStream(CHUNK_START_TAG),
+                    new SequenceInputStream(fileInput.openStream(from, to), new ByteArrayInputStream(CHUNK_END_TAG)));
+            XMLStreamReader reader = factories.get().createXMLStreamReader(input, "UTF-8");
+            try {
+                reader.nextTag();
+                MovieRecord record = new MovieRecord(path);
+                List<Movie> movies = new ArrayList<>();
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (depth == 0 && reader.getLocalName().equals("movie")) {
+                            record.read(reader);
+                            movies.add(record.toMovie(movies.size() + 1));
+                        } else {
+                            depth += 1;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth -= 1;
+                    }
+                }
+                return movies;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | InvalidFileDataException e) {
+            return null;
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i + pattern.length <= bytes.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j])
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private void checkFile() throws FileNotFoundException, FilePermissionException {
+        File file = new File(path);
+        if (!file.exists())
+            throw new FileNotFoundException("! file " + path + " not found !");
+        if (!file.canRead())
+            throw new FilePermissionException("! no read permission for file " + path + "  !");
+    }
+}
@@ -0,0 +1,151 @@
+package sources.IOHandlers.receiver;
+
+import sources.exceptions.io.FilePermissionException;
+import sources.exceptions.io.InvalidFileDataException;
+import sources.exceptions.io.WrongArgumentException;
+import sources.models.Movie;
+import sources.receiver.MovieCollection;
+import sources.receiver.StorageMode;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The MovieCollectionStAXFileReader class reads a movie collection from an XML file in a single pass with a
+ * StAX pull parser. Unlike the DOM reader it never holds the document in memory: only the fields of the
+ * current movie are kept, so files of any size can be read with the heap the collection itself needs.
+ * Errors are reported with the same messages and movie numbers as by the DOM reader.
+ */
+public class MovieCollectionStAXFileReader implements MovieCollectionFileReader {
+    private final String path;
+    private final StorageMode storageMode;
+    private final boolean mapped;
+
+    public MovieCollectionStAXFileReader(String path) {
+        this(path, StorageMode.HEAP);
+    }
+
+    public MovieCollectionStAXFileReader(String path, StorageMode storageMode) {
+        this(path, storageMode, false);
+    }
+
+    public MovieCollectionStAXFileReader(String path, StorageMode storageMode, boolean mapped) {
+        this.path = path;
+        this.storageMode = storageMode;
+        this.mapped = mapped;
+    }
+
+    @Override
+    public MovieCollection read() throws FileNotFoundException, FilePermissionException, InvalidFileDataException {
+        checkFile();
+        MovieCollection movieCollection = new MovieCollection(storageMode);
+
+        // Empty file
+        File file = new File(path);
+        if (file.length() == 0) {
+            System.out.println("Created empty movie collection.");
+            movieCollection.setCreationDate(ZonedDateTime.now());
+            return movieCollection;
+        }
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (CollectionFileInput fileInput = CollectionFileInput.open(path, mapped);
+             InputStream input = fileInput.openStream(0, fileInput.size())) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            try {
+                reader.nextTag();
+                ZonedDateTime collectionCreationDate = readHeader(reader, movieCollection);
+                MovieRecord record = new MovieRecord(path);
+                int count = 0;
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (depth == 0 && reader.getLocalName().equals("movie")) {
+                            count += 1;
+                            record.read(reader);
+                            add(movieCollection, record.toMovie(count), count);
+                        } else {
+                            depth += 1;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth -= 1;
+                    }
+                }
+                movieCollection.setCreationDate(collectionCreationDate);
+                return movieCollection;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new InvalidFileDataException(path, "XML parse error: " + MovieRecord.describe(e));
+        } catch (IOException e) {
+            throw new InvalidFileDataException(path, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the attributes of the root element: the creation date of the collection and the next ID.
+     *
+     * @param reader the reader positioned at the start tag of the root element
+     * @param movieCollection the collection to advance the ID sequence of
+     * @return the creation date of the collection
+     * @throws InvalidFileDataException if an attribute is invalid
+     */
+    ZonedDateTime readHeader(XMLStreamReader reader, MovieCollection movieCollection) throws InvalidFileDataException {
+        String attributeName = "collectionCreationDate";
+        try {
+            ZonedDateTime collectionCreationDate = ZonedDateTime.parse(attribute(reader, attributeName));
+
+            // Files written before the ID sequence was saved have no nextID; the IDs of the movies are reserved anyway
+            attributeName = "nextID";
+            String nextIDInput = attribute(reader, attributeName);
+            if (!nextIDInput.isEmpty())
+                movieCollection.getIdAllocator().advanceTo(Integer.parseInt(nextIDInput));
+            return collectionCreationDate;
+        } catch (DateTimeParseException e) {
+            throw new InvalidFileDataException(path, attributeName + " is invalid or null");
+        } catch (NumberFormatException e) {
+            throw new InvalidFileDataException(path, attributeName + " must be an integer");
+        }
+    }
+
+    /**
+     * Adds a movie read from the file to the collection, sharing its director with equal directors of the
+     * collection and checking that its ID is not taken yet.
+     *
+     * @param movieCollection the collection to add the movie to
+     * @param movie the movie to add
+     * @param number the number of the movie in the file, starting from 1
+     * @throws InvalidFileDataException if the ID or the passport ID of the director is taken
+     */
+    void add(MovieCollection movieCollection, Movie movie, int number) throws InvalidFileDataException {
+        try {
+            movie.setDirector(movieCollection.internDirector(movie.getDirector()));
+            if (movieCollection.getKeyByID(movie.getID()) != null)
+                throw new WrongArgumentException("movie id must be unique");
+            movieCollection.put(movie.getID(), movie);
+        } catch (WrongArgumentException e) {
+            throw MovieRecord.invalidMovie(path, number, e);
+        }
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    private void checkFile() throws FileNotFoundException, FilePermissionException {
+        File file = new File(path);
+        if (!file.exists())
+            throw new FileNotFoundException("! file " + path + " not found !");
+        if (!file.canRead())
+            throw new FilePermissionException("! no read permission for file " + path + "  !");
+    }
+}
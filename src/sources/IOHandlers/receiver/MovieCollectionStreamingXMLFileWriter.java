@@ -0,0 +1,425 @@
+package sources.IOHandlers.receiver;
+
+import sources.exceptions.io.CustomIOException;
+import sources.exceptions.io.FilePermissionException;
+import sources.models.*;
+import sources.receiver.MovieCollection;
+import sources.receiver.MovieCollectionSnapshot;
+import sources.receiver.MovieCursor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * The MovieCollectionStreamingXMLFileWriter class writes a movie collection to an XML file, one movie element per
+ * movie indented by four spaces per level, in the layout the XML readers expect. It encodes everything straight
+ * into one reusable byte buffer that is written to the file whenever it fills up. Tags and indents are encoded
+ * once, and numbers, dates and strings are encoded character by character, so writing a movie allocates next
+ * to nothing.
+ * <p>
+ * Text is always written as UTF-8, and the characters that XML reserves are escaped, so every name can be
+ * read back. Characters XML cannot represent at all are written as '?'.
+ * <p>
+ * The file is never overwritten in place. The collection is written to a temporary file next to it, which is
+ * forced to the disk and then atomically moved over the file, so a crash during a save leaves either the old or
+ * the new collection. The previous generation stays available as a hard link named like the file with
+ * {@value #BACKUP_SUFFIX} appended, which costs no copying.
+ */
+public class MovieCollectionStreamingXMLFileWriter implements MovieCollectionFileWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_ENCODED_CHAR_SIZE = 6;
+    private static final String BACKUP_SUFFIX = ".bak";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final byte[] HEADER = bytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<movieCollection collectionCreationDate=\"");
+    private static final byte[] NEXT_ID = bytes("\" nextID=\"");
+    private static final byte[] HEADER_END = bytes("\">\n");
+    private static final byte[] FOOTER = bytes("</movieCollection>");
+    private static final byte[] MOVIE_OPEN = bytes("    <movie>\n");
+    private static final byte[] MOVIE_CLOSE = bytes("    </movie>\n");
+    private static final byte[] ID_OPEN = bytes("        <id>");
+    private static final byte[] ID_CLOSE = bytes("</id>\n");
+    private static final byte[] NAME_OPEN = bytes("        <movieName>");
+    private static final byte[] NAME_CLOSE = bytes("</movieName>\n");
+    private static final byte[] COORDINATES_OPEN = bytes("        <coordinates>\n");
+    private static final byte[] COORDINATES_CLOSE = bytes("        </coordinates>\n");
+    private static final byte[] X_OPEN = bytes("            <x>");
+    private static final byte[] X_CLOSE = bytes("</x>\n");
+    private static final byte[] Y_OPEN = bytes("            <y>");
+    private static final byte[] Y_CLOSE = bytes("</y>\n");
+    private static final byte[] CREATION_DATE_OPEN = bytes("        <movieCreationDate>");
+    private static final byte[] CREATION_DATE_CLOSE = bytes("</movieCreationDate>\n");
+    private static final byte[] OSCARS_COUNT_OPEN = bytes("        <oscarsCount>");
+    private static final byte[] OSCARS_COUNT_CLOSE = bytes("</oscarsCount>\n");
+    private static final byte[] GENRE_OPEN = bytes("        <genre>");
+    private static final byte[] GENRE_CLOSE = bytes("</genre>\n");
+    private static final byte[] MPAA_RATING_OPEN = bytes("        <mpaaRating>");
+    private static final byte[] MPAA_RATING_CLOSE = bytes("</mpaaRating>\n");
+    private static final byte[] DIRECTOR_OPEN = bytes("        <director>\n");
+    private static final byte[] DIRECTOR_CLOSE = bytes("        </director>\n");
+    private static final byte[] DIRECTOR_NAME_OPEN = bytes("            <directorName>");
+    private static final byte[] DIRECTOR_NAME_CLOSE = bytes("</directorName>\n");
+    private static final byte[] BIRTHDAY_OPEN = bytes("            <birthday>");
+    private static final byte[] BIRTHDAY_CLOSE = bytes("</birthday>\n");
+    private static final byte[] WEIGHT_OPEN = bytes("            <weight>");
+    private static final byte[] WEIGHT_CLOSE = bytes("</weight>\n");
+    private static final byte[] PASSPORT_ID_OPEN = bytes("            <passportID>");
+    private static final byte[] PASSPORT_ID_CLOSE = bytes("</passportID>\n");
+    private static final byte[] PASSPORT_ID_EMPTY = bytes("            <passportID/>\n");
+    private static final byte[][] GENRES = enumBytes(MovieGenre.values());
+    private static final byte[][] RATINGS = enumBytes(MpaaRating.values());
+    private static final byte[] MIN_LONG = bytes(String.valueOf(Long.MIN_VALUE));
+
+    private final String path;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private FileChannel channel;
+    private int position;
+
+    public MovieCollectionStreamingXMLFileWriter(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized void write(MovieCollection movieCollection) throws FileNotFoundException, FilePermissionException, CustomIOException {
+        checkFile();
+        MovieCollectionSnapshot snapshot = movieCollection.snapshot();
+        Path temp = null;
+        try {
+            Path target = Path.of(path).toRealPath();
+            Path directory = target.toAbsolutePath().getParent();
+            temp = Files.createTempFile(directory, target.getFileName() + ".", TEMP_SUFFIX);
+            copyPermissions(target, temp);
+            try (FileChannel fileChannel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel = fileChannel;
+                position = 0;
+                write(HEADER);
+                writeDateTime(snapshot.getCreationDate());
+                write(NEXT_ID);
+                writeLong(movieCollection.getIdAllocator().getNextID());
+                write(HEADER_END);
+                MovieCursor movieCursor = snapshot.cursor(0);
+                while (movieCursor.advance()) {
+                    writeMovie(movieCursor.value());
+                }
+                write(FOOTER);
+                flush();
+                fileChannel.force(false);
+            }
+            keepBackup(target);
+            replace(temp, target);
+            temp = null;
+            forceDirectory(directory);
+        } catch (IOException e) {
+            throw new CustomIOException("! " + this.getClass().getName() + ": IOException when writing to " + path + " !");
+        } finally {
+            channel = null;
+            if (temp != null)
+                deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Makes the backup refer to the current contents of the file. A hard link is used where the file system
+     * supports it, so the old generation is kept without being copied; the atomic move that follows only
+     * unlinks the file name from it.
+     *
+     * @param target the file that is about to be replaced
+     * @throws IOException if the backup cannot be created
+     */
+    private static void keepBackup(Path target) throws IOException {
+        Path backup = target.resolveSibling(target.getFileName() + BACKUP_SUFFIX);
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, target);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(target, backup, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the entry of the moved file in the directory to the disk. Not every platform can open
+     * a directory as a channel, in which case the move is left to the file system to persist.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            // the collection is already in place
+        }
+    }
+
+    /**
+     * Gives the temporary file the permissions of the file it replaces, since temporary files are
+     * created readable by the owner only.
+     */
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // the temporary file is left behind
+        }
+    }
+
+    private void writeMovie(Movie movie) throws IOException {
+        write(MOVIE_OPEN);
+        write(ID_OPEN);
+        writeLong(movie.getID());
+        write(ID_CLOSE);
+        write(NAME_OPEN);
+        writeText(movie.getName());
+        write(NAME_CLOSE);
+        Coordinates coordinates = movie.getCoordinates();
+        write(COORDINATES_OPEN);
+        write(X_OPEN);
+        writeLong(coordinates.getX());
+        write(X_CLOSE);
+        write(Y_OPEN);
+        writeLong(coordinates.getY());
+        write(Y_CLOSE);
+        write(COORDINATES_CLOSE);
+        write(CREATION_DATE_OPEN);
+        writeDateTime(movie.getCreationDate());
+        write(CREATION_DATE_CLOSE);
+        write(OSCARS_COUNT_OPEN);
+        writeLong(movie.getOscarsCount());
+        write(OSCARS_COUNT_CLOSE);
+        write(GENRE_OPEN);
+        write(GENRES[movie.getGenre().ordinal()]);
+        write(GENRE_CLOSE);
+        write(MPAA_RATING_OPEN);
+        write(RATINGS[movie.getMpaaRating().ordinal()]);
+        write(MPAA_RATING_CLOSE);
+        Person director = movie.getDirector();
+        write(DIRECTOR_OPEN);
+        write(DIRECTOR_NAME_OPEN);
+        writeText(director.getName());
+        write(DIRECTOR_NAME_CLOSE);
+        write(BIRTHDAY_OPEN);
+        writeDateTime(director.getBirthday());
+        write(BIRTHDAY_CLOSE);
+        write(WEIGHT_OPEN);
+        writeLong(director.getWeight());
+        write(WEIGHT_CLOSE);
+        if (director.getPassportID() == null) {
+            write(PASSPORT_ID_EMPTY);
+        } else {
+            write(PASSPORT_ID_OPEN);
+            writeText(director.getPassportID());
+            write(PASSPORT_ID_CLOSE);
+        }
+        write(DIRECTOR_CLOSE);
+        write(MOVIE_CLOSE);
+    }
+
+    /**
+     * Writes the date and time in the format of ZonedDateTime.toString, which ZonedDateTime.parse reads back.
+     */
+    private void writeDateTime(ZonedDateTime dateTime) throws IOException {
+        writeDateTime(dateTime.toLocalDateTime());
+        ZoneOffset offset = dateTime.getOffset();
+        writeText(offset.getId());
+        if (dateTime.getZone() != offset) {
+            writeByte('[');
+            writeText(dateTime.getZone().getId());
+            writeByte(']');
+        }
+    }
+
+    /**
+     * Writes the date and time in the format of LocalDateTime.toString, which LocalDateTime.parse reads back.
+     */
+    private void writeDateTime(LocalDateTime dateTime) throws IOException {
+        LocalDate date = dateTime.toLocalDate();
+        int year = date.getYear();
+        if (Math.abs(year) < 1000) {
+            if (year < 0)
+                writeByte('-');
+            writeDigits(Math.abs(year), 4);
+        } else {
+            if (year > 9999)
+                writeByte('+');
+            writeLong(year);
+        }
+        writeByte('-');
+        writeDigits(date.getMonthValue(), 2);
+        writeByte('-');
+        writeDigits(date.getDayOfMonth(), 2);
+        writeByte('T');
+        LocalTime time = dateTime.toLocalTime();
+        writeDigits(time.getHour(), 2);
+        writeByte(':');
+        writeDigits(time.getMinute(), 2);
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second > 0 || nano > 0) {
+            writeByte(':');
+            writeDigits(second, 2);
+            if (nano > 0) {
+                writeByte('.');
+                if (nano % 1_000_000 == 0) {
+                    writeDigits(nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    writeDigits(nano / 1000, 6);
+                } else {
+                    writeDigits(nano, 9);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a non-negative number as exactly the specified number of decimal digits, padded with zeros.
+     */
+    private void writeDigits(int value, int digits) throws IOException {
+        ensure(digits);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            write(MIN_LONG);
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits += 1;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Writes the text as UTF-8, escaping the characters XML reserves in text and attribute values.
+     */
+    private void writeText(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (position + MAX_ENCODED_CHAR_SIZE > buffer.length)
+                flush();
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> writeAscii("&lt;");
+                case '>' -> writeAscii("&gt;");
+                case '&' -> writeAscii("&amp;");
+                case '"' -> writeAscii("&quot;");
+                case '\'' -> writeAscii("&apos;");
+                case '\r' -> writeAscii("&#13;");
+                default -> {
+                    if (c < 0x80) {
+                        buffer[position++] = (byte) (c < 0x20 && c != '\t' && c != '\n' ? '?' : c);
+                    } else if (c < 0x800) {
+                        buffer[position++] = (byte) (0xC0 | (c >> 6));
+                        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                        buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                    } else if (Character.isSurrogate(c) || c == 0xFFFE || c == 0xFFFF) {
+                        buffer[position++] = '?';
+                    } else {
+                        buffer[position++] = (byte) (0xE0 | (c >> 12));
+                        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies an escape sequence of at most MAX_ENCODED_CHAR_SIZE ASCII characters; the caller makes room for it.
+     */
+    private void writeAscii(String escape) {
+        for (int i = 0; i < escape.length(); i++) {
+            buffer[position++] = (byte) escape.charAt(i);
+        }
+    }
+
+    private void writeByte(char c) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (position + length > buffer.length)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        byteBuffer.clear().limit(position);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        position = 0;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] enumBytes(Enum<?>[] values) {
+        byte[][] result = new byte[values.length][];
+        for (Enum<?> value : values) {
+            result[value.ordinal()] = bytes(value.name());
+        }
+        return result;
+    }
+
+    private void checkFile() throws FileNotFoundException, FilePermissionException {
+        File file = new File(path);
+        if (!file.exists())
+            throw new FileNotFoundException("! file " + path + " not found !");
+        if (!file.canWrite())
+            throw new FilePermissionException("! no write permission for file " + path + "  !");
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory == null || !directory.canWrite())
+            throw new FilePermissionException("! no write permission for the directory of file " + path + "  !");
+    }
+}
@@ -11,6 +11,7 @@ import sources.exceptions.io.InvalidFileDataException;
 import sources.exceptions.io.WrongArgumentException;
 import sources.models.*;
 import sources.receiver.MovieCollection;
+import sources.receiver.StorageMode;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -26,9 +27,21 @@ import java.util.Arrays;
 
 public class MovieCollectionXMLFileReader implements MovieCollectionFileReader {
     private final String path;
+    private final StorageMode storageMode;
+    private final boolean mapped;
 
     public MovieCollectionXMLFileReader(String path) {
+        this(path, StorageMode.HEAP);
+    }
+
+    public MovieCollectionXMLFileReader(String path, StorageMode storageMode) {
+        this(path, storageMode, false);
+    }
+
+    public MovieCollectionXMLFileReader(String path, StorageMode storageMode, boolean mapped) {
         this.path = path;
+        this.storageMode = storageMode;
+        this.mapped = mapped;
     }
 
     @Override
@@ -37,7 +50,7 @@ public class MovieCollectionXMLFileReader implements MovieCollectionFileReader {
         String attributeName = null;
         int i = -1;
         try {
-            MovieCollection movieCollection = new MovieCollection();
+            MovieCollection movieCollection = new MovieCollection(storageMode);
 
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             DocumentBuilder builder = factory.newDocumentBuilder();
@@ -50,13 +63,26 @@ public class MovieCollectionXMLFileReader implements MovieCollectionFileReader {
                 return movieCollection;
             }
 
-            Document document = builder.parse(file);
+            Document document;
+            if (mapped) {
+                try (CollectionFileInput fileInput = CollectionFileInput.open(path, true)) {
+                    document = builder.parse(fileInput.openStream(0, fileInput.size()));
+                }
+            } else {
+                document = builder.parse(file);
+            }
             document.getDocumentElement().normalize();
 
             attributeName = "collectionCreationDate";
             String collectionCreationDateInput = document.getDocumentElement().getAttribute(attributeName);
             ZonedDateTime collectionCreationDate = ZonedDateTime.parse(collectionCreationDateInput);
 
+            // Files written before the ID sequence was saved have no nextID; the IDs of the movies are reserved anyway
+            attributeName = "nextID";
+            String nextIDInput = document.getDocumentElement().getAttribute(attributeName);
+            if (!nextIDInput.isEmpty())
+                movieCollection.getIdAllocator().advanceTo(Integer.parseInt(nextIDInput));
+
             attributeName = "movie";
             NodeList movieElements = document.getDocumentElement().getElementsByTagName(attributeName);
             for (i = 0; i < movieElements.getLength(); i++) {
@@ -130,7 +156,7 @@ public class MovieCollectionXMLFileReader implements MovieCollectionFileReader {
                     passportID = passportIDInput.getTextContent().trim();
                 }
 
-                Person director = new Person(directorNameInput, birthday, weight, passportID);
+                Person director = movieCollection.internDirector(new Person(directorNameInput, birthday, weight, passportID));
 
                 if (movieCollection.getElementByID(id) != null)
                     throw new WrongArgumentException("movie id must be unique");
@@ -140,7 +166,6 @@ public class MovieCollectionXMLFileReader implements MovieCollectionFileReader {
                 movieCollection.put(id, movie);
             }
             movieCollection.setCreationDate(collectionCreationDate);
-            Movie.updateNextId(movieCollection);
             return movieCollection;
         } catch (NullPointerException e) {
             throw new InvalidFileDataException(path, "movie №" + (i + 1) + ": " + attributeName + " is null");
@@ -155,7 +180,11 @@ public class MovieCollectionXMLFileReader implements MovieCollectionFileReader {
         } catch (SAXParseException e) {
             throw new InvalidFileDataException(path, "XML parse error: " + e.getMessage());
         } catch (NumberFormatException e) {
-            throw new InvalidFileDataException(path, "movie №" + (i + 1) + ": " + attributeName + " must be an integer");
+            if (i < 0) {
+                throw new InvalidFileDataException(path, attributeName + " must be an integer");
+            } else {
+                throw new InvalidFileDataException(path, "movie №" + (i + 1) + ": " + attributeName + " must be an integer");
+            }
         } catch (WrongArgumentException e) {
             StringBuilder errorMessage = new StringBuilder(e.getMessage());
             errorMessage.delete(0, 2);
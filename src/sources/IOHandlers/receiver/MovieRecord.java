@@ -0,0 +1,198 @@
+package sources.IOHandlers.receiver;
+
+import sources.exceptions.io.InvalidFileDataException;
+import sources.exceptions.io.WrongArgumentException;
+import sources.models.*;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+
+/**
+ * The MovieRecord class holds the texts of the fields of one movie element while it is streamed from an XML file,
+ * and turns them into a Movie with the same checks and error messages as the DOM reader. One record is reused
+ * for every movie of a file, so reading needs memory for a single movie only.
+ */
+final class MovieRecord {
+    private final String path;
+    private final HashMap<String, String> texts = new HashMap<>();
+    private final StringBuilder text = new StringBuilder();
+    private boolean hasCoordinates;
+    private boolean hasDirector;
+
+    MovieRecord(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads the fields of the movie element the reader is positioned at and leaves the reader at its end tag.
+     * Like the DOM reader, only the first coordinates and director elements of a movie are looked into.
+     *
+     * @param reader the reader positioned at the start tag of a movie element
+     * @throws XMLStreamException if the XML is malformed
+     */
+    void read(XMLStreamReader reader) throws XMLStreamException {
+        texts.clear();
+        hasCoordinates = false;
+        hasDirector = false;
+        String section = null;
+        int sectionDepth = 0;
+        int depth = 0;
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    depth += 1;
+                    text.setLength(0);
+                    String name = reader.getLocalName();
+                    if (section == null && name.equals("coordinates") && !hasCoordinates) {
+                        hasCoordinates = true;
+                        section = name;
+                        sectionDepth = depth;
+                    } else if (section == null && name.equals("director") && !hasDirector) {
+                        hasDirector = true;
+                        section = name;
+                        sectionDepth = depth;
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (depth == 0)
+                        return;
+                    if (depth == sectionDepth && section != null) {
+                        section = null;
+                    } else {
+                        String key = section == null ? reader.getLocalName() : section + "/" + reader.getLocalName();
+                        texts.putIfAbsent(key, text.toString().trim());
+                    }
+                    text.setLength(0);
+                    depth -= 1;
+                }
+                case XMLStreamConstants.END_DOCUMENT -> throw new XMLStreamException("unexpected end of document");
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the movie from the fields read last. The director is not interned and the uniqueness of the ID
+     * is not checked, since both depend on the collection the movie goes to.
+     *
+     * @param number the number of the movie in the file, starting from 1, used in error messages
+     * @return the movie described by the fields
+     * @throws InvalidFileDataException if a field is missing or invalid
+     */
+    Movie toMovie(int number) throws InvalidFileDataException {
+        String attributeName = null;
+        try {
+            attributeName = "id";
+            int id = Integer.parseInt(field(attributeName));
+
+            attributeName = "movieName";
+            String movieName = field(attributeName);
+
+            attributeName = "coordinates";
+            if (!hasCoordinates)
+                throw new NullPointerException();
+            attributeName = "x";
+            int x = Integer.parseInt(field("coordinates/" + attributeName));
+            attributeName = "y";
+            int y = Integer.parseInt(field("coordinates/" + attributeName));
+            Coordinates coordinates = new Coordinates(x, y);
+
+            attributeName = "movieCreationDate";
+            ZonedDateTime creationDate = ZonedDateTime.parse(field(attributeName));
+
+            attributeName = "oscarsCount";
+            long oscarsCount = Long.parseLong(field(attributeName));
+
+            attributeName = "genre";
+            String genreInput = field(attributeName);
+            MovieGenre movieGenre;
+            try {
+                movieGenre = MovieGenre.valueOf(genreInput);
+            } catch (IllegalArgumentException e) {
+                throw new WrongArgumentException("wrong movie genre");
+            }
+
+            attributeName = "mpaaRating";
+            String mpaaRatingInput = field(attributeName);
+            MpaaRating mpaaRating;
+            try {
+                mpaaRating = MpaaRating.valueOf(mpaaRatingInput);
+            } catch (IllegalArgumentException e) {
+                throw new WrongArgumentException("wrong MPAA rating");
+            }
+
+            attributeName = "director";
+            if (!hasDirector)
+                throw new NullPointerException();
+
+            attributeName = "directorName";
+            String directorName = field("director/" + attributeName);
+
+            attributeName = "birthday";
+            LocalDateTime birthday = LocalDateTime.parse(field("director/" + attributeName));
+
+            attributeName = "weight";
+            Integer weight = Integer.parseInt(field("director/" + attributeName));
+
+            attributeName = "passportID";
+            String passportID = texts.get("director/" + attributeName);
+            if (passportID != null && passportID.equals(""))
+                passportID = null;
+
+            Person director = new Person(directorName, birthday, weight, passportID);
+            Movie movie = new Movie(id, movieName, coordinates, oscarsCount, movieGenre, mpaaRating, director);
+            movie.setCreationDate(creationDate);
+            return movie;
+        } catch (NullPointerException e) {
+            throw new InvalidFileDataException(path, "movie №" + number + ": " + attributeName + " is null");
+        } catch (DateTimeParseException e) {
+            throw new InvalidFileDataException(path, "movie №" + number + ": " + attributeName + " is invalid or null");
+        } catch (NumberFormatException e) {
+            throw new InvalidFileDataException(path, "movie №" + number + ": " + attributeName + " must be an integer");
+        } catch (WrongArgumentException e) {
+            throw invalidMovie(path, number, e);
+        }
+    }
+
+    /**
+     * Wraps a failed check of a movie into the exception the XML readers report it with.
+     *
+     * @param path the path of the file being read
+     * @param number the number of the movie in the file, starting from 1
+     * @param e the failed check
+     * @return the exception to throw
+     */
+    static InvalidFileDataException invalidMovie(String path, int number, WrongArgumentException e) {
+        StringBuilder errorMessage = new StringBuilder(e.getMessage());
+        errorMessage.delete(0, 2);
+        errorMessage.delete(errorMessage.length() - 2, errorMessage.length());
+        return new InvalidFileDataException(path, "movie №" + number + ": " + errorMessage);
+    }
+
+    /**
+     * Returns the message of a StAX parse error without the location header, as the DOM reader reports it.
+     *
+     * @param e the parse error
+     * @return the description of the error
+     */
+    static String describe(XMLStreamException e) {
+        String message = e.getMessage();
+        int start = message.indexOf("Message: ");
+        return start < 0 ? message : message.substring(start + "Message: ".length());
+    }
+
+    private String field(String key) {
+        String value = texts.get(key);
+        if (value == null)
+            throw new NullPointerException();
+        return value;
+    }
+}
@@ -0,0 +1,37 @@
+package sources.IOHandlers.receiver;
+
+import sources.receiver.StorageMode;
+
+/**
+ * The ReaderMode enum lists the ways a movie collection can be read from its XML file.
+ */
+public enum ReaderMode {
+    /**
+     * The whole file is parsed into a DOM tree first and the movies are taken from the tree.
+     */
+    DOM,
+    /**
+     * The file is read in a single pass with a StAX pull parser, keeping one movie in memory at a time.
+     */
+    STREAMING,
+    /**
+     * The file is cut into chunks of movies that are parsed concurrently on a pool of threads.
+     */
+    PARALLEL;
+
+    /**
+     * Creates a reader of this mode for the specified file.
+     *
+     * @param path the path of the file to read
+     * @param storageMode the storage mode of the collection to read into
+     * @param mapped whether the file should be memory-mapped instead of read through buffers
+     * @return a new reader
+     */
+    public MovieCollectionFileReader createReader(String path, StorageMode storageMode, boolean mapped) {
+        return switch (this) {
+            case DOM -> new MovieCollectionXMLFileReader(path, storageMode, mapped);
+            case STREAMING -> new MovieCollectionStAXFileReader(path, storageMode, mapped);
+            case PARALLEL -> new MovieCollectionParallelFileReader(path, storageMode, mapped);
+        };
+    }
+}
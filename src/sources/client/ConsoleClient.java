@@ -14,6 +14,7 @@ import sources.models.Movie;
 import sources.models.MovieGenre;
 import sources.models.MpaaRating;
 import sources.models.helpers.MovieArgumentChecker;
+import sources.receiver.MoviePage;
 import sources.receiver.Receiver;
 
 import java.io.FileNotFoundException;
@@ -22,8 +23,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 import static sources.client.MovieDataConsoleReader.*;
@@ -34,6 +38,7 @@ import static sources.client.MovieDataConsoleReader.*;
  reads user input, executes commands and handles exceptions.
  */
 public class ConsoleClient implements Client {
+    private static final int DEFAULT_PAGE_SIZE = 20;
     Invoker invoker;
     Receiver receiver;
     private final Stack<String> pathStack = new Stack<>();
@@ -114,10 +119,36 @@ public class ConsoleClient implements Client {
                 System.out.println(result);
             }
             case "show" -> {
+                if (args.length > 2)
+                    throw new WrongNumberOfArgumentsException();
+                if (args.length == 0) {
+                    MoviePage result = invoker.executeAndReturn(new Show(this, receiver));
+                    PrettyPrinter.printMovieCursor(result.cursor());
+                } else {
+                    try {
+                        int offset = Integer.parseInt(args[0]);
+                        int limit = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PAGE_SIZE;
+                        if (offset < 0)
+                            throw new WrongArgumentException("argument offset cannot be < 0");
+                        if (limit <= 0)
+                            throw new WrongArgumentException("argument limit cannot be <= 0");
+                        MoviePage result = invoker.executeAndReturn(new Show(this, receiver, offset, limit));
+                        PrettyPrinter.printMoviePage(result);
+                    } catch (NumberFormatException e) {
+                        String errorMessage = "! not an integer !";
+                        if (inScriptMode()) {
+                            throw new InvalidScriptException(errorMessage);
+                        } else {
+                            System.out.println(errorMessage);
+                        }
+                    }
+                }
+            }
+            case "next" -> {
                 if (args.length != 0)
                     throw new WrongNumberOfArgumentsException();
-                HashMap<Integer, Movie> result = invoker.executeAndReturn(new Show(this, receiver));
-                PrettyPrinter.printMovieHashMap(result);
+                MoviePage result = invoker.executeAndReturn(new Next(this, receiver));
+                PrettyPrinter.printMoviePage(result);
             }
             case "insert" -> {
                 if (args.length != 1)
@@ -147,6 +178,44 @@ public class ConsoleClient implements Client {
                     }
                 }
             }
+            case "insert_batch" -> {
+                if (args.length != 1)
+                    throw new WrongNumberOfArgumentsException();
+                try {
+                    boolean inScriptMode = inScriptMode();
+                    int count = Integer.parseInt(args[0]);
+                    if (count <= 0)
+                        throw new WrongArgumentException("argument count cannot be <= 0");
+                    LinkedHashMap<Integer, Movie> movies = new LinkedHashMap<>();
+                    Exception batchError = null;
+                    // all lines of the batch are read before an error is reported,
+                    // so that none of them is taken for a command
+                    for (int i = 1; i <= count; i++) {
+                        Map.Entry<Integer, Movie> movieEntry;
+                        try {
+                            movieEntry = readMovieLine(basicReader, inScriptMode, i);
+                        } catch (InvalidScriptException e) {
+                            if (batchError == null)
+                                batchError = e;
+                            continue;
+                        }
+                        if (movies.putIfAbsent(movieEntry.getKey(), movieEntry.getValue()) != null && batchError == null)
+                            batchError = new CollectionKeyException("element №" + i + ": key " + movieEntry.getKey() + " is repeated in the batch");
+                    }
+                    if (batchError instanceof InvalidScriptException e)
+                        throw e;
+                    if (batchError instanceof CollectionKeyException e)
+                        throw e;
+                    invoker.execute(new InsertBatch(this, receiver, movies));
+                } catch (NumberFormatException e) {
+                    String errorMessage = "! not an integer !";
+                    if (inScriptMode()) {
+                        throw new InvalidScriptException(errorMessage);
+                    } else {
+                        System.out.println(errorMessage);
+                    }
+                }
+            }
             case "update" -> {
                 if (args.length != 1)
                     throw new WrongNumberOfArgumentsException();
@@ -275,23 +344,116 @@ public class ConsoleClient implements Client {
             case "print_ascending" -> {
                 if (args.length != 0)
                     throw new WrongNumberOfArgumentsException();
-                List<Movie> movieList = invoker.executeAndReturn(new PrintAscending(this, receiver));
+                Collection<Movie> movieList = invoker.executeAndReturn(new PrintAscending(this, receiver));
                 System.out.println("*elements of collection ascended*");
                 PrettyPrinter.printMovieList(movieList);
             }
             case "print_descending" -> {
                 if (args.length != 0)
                     throw new WrongNumberOfArgumentsException();
-                List<Movie> movieList = invoker.executeAndReturn(new PrintDescending(this, receiver));
+                Collection<Movie> movieList = invoker.executeAndReturn(new PrintDescending(this, receiver));
                 System.out.println("*elements of collection descended*");
                 PrettyPrinter.printMovieList(movieList);
             }
             case "print_field_descending_oscars_count" -> {
-                if (args.length != 0)
+                if (args.length > 2)
+                    throw new WrongNumberOfArgumentsException();
+                try {
+                    int limit = args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE;
+                    int offset = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+                    if (limit <= 0)
+                        throw new WrongArgumentException("argument limit cannot be <= 0");
+                    if (offset < 0)
+                        throw new WrongArgumentException("argument offset cannot be < 0");
+                    List<Movie> movieList = invoker.executeAndReturn(new PrintFieldDescendingOscarsCount(this, receiver, limit, offset));
+                    System.out.println("*oscars count descended*");
+                    PrettyPrinter.printMovieListOscars(movieList);
+                } catch (NumberFormatException e) {
+                    String errorMessage = "! not an integer !";
+                    if (inScriptMode()) {
+                        throw new InvalidScriptException(errorMessage);
+                    } else {
+                        System.out.println(errorMessage);
+                    }
+                }
+            }
+            case "filter" -> {
+                if (args.length < 1 || args.length > 2)
+                    throw new WrongNumberOfArgumentsException();
+                MovieGenre movieGenre = null;
+                MpaaRating mpaaRating = null;
+                for (String arg : args) {
+                    String value = arg.toUpperCase();
+                    if (Arrays.stream(MovieGenre.values()).anyMatch(genre -> genre.name().equals(value))) {
+                        if (movieGenre != null)
+                            throw new WrongArgumentException("movie genre is specified twice");
+                        movieGenre = MovieGenre.valueOf(value);
+                    } else if (Arrays.stream(MpaaRating.values()).anyMatch(rating -> rating.name().equals(value))) {
+                        if (mpaaRating != null)
+                            throw new WrongArgumentException("MPAA rating is specified twice");
+                        mpaaRating = MpaaRating.valueOf(value);
+                    } else {
+                        throw new WrongArgumentException("wrong movie genre or MPAA rating");
+                    }
+                }
+                List<Movie> movieList = invoker.executeAndReturn(new Filter(this, receiver, movieGenre, mpaaRating));
+                System.out.println("*filtered elements*");
+                PrettyPrinter.printMovieList(movieList);
+            }
+            case "find_name" -> {
+                if (args.length == 0)
+                    throw new WrongNumberOfArgumentsException();
+                List<Movie> movieList = invoker.executeAndReturn(new FindName(this, receiver, String.join(" ", args)));
+                System.out.println("*found elements*");
+                PrettyPrinter.printMovieList(movieList);
+            }
+            case "search_name" -> {
+                if (args.length == 0)
                     throw new WrongNumberOfArgumentsException();
-                List<Movie> movieList = invoker.executeAndReturn(new PrintFieldDescendingOscarsCount(this, receiver));
-                System.out.println("*oscars count descended*");
-                PrettyPrinter.printMovieListOscars(movieList);
+                List<Movie> movieList = invoker.executeAndReturn(new SearchName(this, receiver, String.join(" ", args)));
+                System.out.println("*found elements*");
+                PrettyPrinter.printMovieList(movieList);
+            }
+            case "filter_in_box" -> {
+                if (args.length != 4)
+                    throw new WrongNumberOfArgumentsException();
+                try {
+                    int x1 = Integer.parseInt(args[0]);
+                    int y1 = Integer.parseInt(args[1]);
+                    int x2 = Integer.parseInt(args[2]);
+                    int y2 = Integer.parseInt(args[3]);
+                    List<Movie> movieList = invoker.executeAndReturn(new FilterInBox(this, receiver, x1, y1, x2, y2));
+                    System.out.println("*elements in box*");
+                    PrettyPrinter.printMovieList(movieList);
+                } catch (NumberFormatException e) {
+                    String errorMessage = "! not an integer !";
+                    if (inScriptMode()) {
+                        throw new InvalidScriptException(errorMessage);
+                    } else {
+                        System.out.println(errorMessage);
+                    }
+                }
+            }
+            case "nearest" -> {
+                if (args.length != 3)
+                    throw new WrongNumberOfArgumentsException();
+                try {
+                    int x = Integer.parseInt(args[0]);
+                    int y = Integer.parseInt(args[1]);
+                    int k = Integer.parseInt(args[2]);
+                    if (k <= 0)
+                        throw new WrongArgumentException("argument k cannot be <= 0");
+                    List<Movie> movieList = invoker.executeAndReturn(new Nearest(this, receiver, x, y, k));
+                    System.out.println("*nearest elements*");
+                    PrettyPrinter.printMovieList(movieList);
+                } catch (NumberFormatException e) {
+                    String errorMessage = "! not an integer !";
+                    if (inScriptMode()) {
+                        throw new InvalidScriptException(errorMessage);
+                    } else {
+                        System.out.println(errorMessage);
+                    }
+                }
             }
 
             default -> throw new InvalidCommandException(commandName);
@@ -308,10 +470,14 @@ public class ConsoleClient implements Client {
         System.out.println(" : вывести справку по доступным командам");
         System.out.printf("%-37s", "- info");
         System.out.println(" : вывести в стандартный поток вывода информацию о коллекции (тип, дата инициализации, количество элементов и т.д.)");
-        System.out.printf("%-37s", "- show");
-        System.out.println(" : вывести в стандартный поток вывода все элементы коллекции в строковом представлении");
+        System.out.printf("%-37s", "- show [offset] [limit]");
+        System.out.println(" : вывести в стандартный поток вывода все элементы коллекции в строковом представлении (или limit элементов, пропустив первые offset)");
+        System.out.printf("%-37s", "- next");
+        System.out.println(" : вывести следующую страницу элементов после show offset limit");
         System.out.printf("%-37s", "- insert null {element}");
         System.out.println(" : добавить новый элемент с заданным ключом");
+        System.out.printf("%-37s", "- insert_batch count");
+        System.out.println(" : добавить count элементов, по одному в строке: key;name;x;y;oscarsCount;genre;mpaaRating;directorName;birthday;weight;passportID, passportID может быть пустым");
         System.out.printf("%-37s", "- update id {element}");
         System.out.println(" : обновить значение элемента коллекции, id которого равен заданному");
         System.out.printf("%-37s", "- remove_key null");
@@ -334,8 +500,18 @@ public class ConsoleClient implements Client {
         System.out.println(" : вывести элементы коллекции в порядке возрастания");
         System.out.printf("%-37s", "- print_descending");
         System.out.println(" : вывести элементы коллекции в порядке убывания");
-        System.out.printf("%-37s", "- print_field_descending_oscars_count");
-        System.out.println(" : вывести значения поля oscarsCount всех элементов в порядке убывания");
+        System.out.printf("%-37s", "- print_field_descending_oscars_count [limit] [offset]");
+        System.out.println(" : вывести значения поля oscarsCount всех элементов в порядке убывания (не более limit элементов, пропустив первые offset)");
+        System.out.printf("%-37s", "- filter [genre] [mpaa_rating]");
+        System.out.println(" : вывести элементы коллекции с заданным жанром и/или возрастным рейтингом");
+        System.out.printf("%-37s", "- find_name prefix");
+        System.out.println(" : вывести элементы коллекции, название которых начинается с заданной строки");
+        System.out.printf("%-37s", "- search_name substring");
+        System.out.println(" : вывести элементы коллекции, название которых содержит заданную строку");
+        System.out.printf("%-37s", "- filter_in_box x1 y1 x2 y2");
+        System.out.println(" : вывести элементы коллекции, координаты которых лежат в заданном прямоугольнике");
+        System.out.printf("%-37s", "- nearest x y k");
+        System.out.println(" : вывести k элементов коллекции, ближайших к точке (x, y)");
     }
 
     /**
@@ -3,8 +3,11 @@ package sources.client;
 import sources.IOHandlers.client.BasicReader;
 import sources.exceptions.client.InvalidScriptException;
 import sources.exceptions.io.WrongArgumentException;
+import sources.models.Coordinates;
+import sources.models.Movie;
 import sources.models.MovieGenre;
 import sources.models.MpaaRating;
+import sources.models.Person;
 import sources.models.helpers.MovieArgumentChecker;
 import sources.models.helpers.PersonArgumentChecker;
 
@@ -12,6 +15,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -336,4 +340,73 @@ public class MovieDataConsoleReader {
         }
         return passportID;
     }
+
+    /**
+     * Reads a whole movie from one line of console input using a BasicReader instance. The line holds the key
+     * and the fields of the movie separated by semicolons: key;name;x;y;oscarsCount;genre;mpaaRating;
+     * directorName;birthday;weight;passportID. Only the passport ID may be left empty; an empty weight
+     * is rejected like any other missing field.
+     *
+     * @param basicReader The BasicReader instance used for reading input from the console.
+     * @param inScriptMode Boolean flag indicating whether the method is running in script mode.
+     * @param number The number of the movie in the batch, used in error messages.
+     * @return The key and the movie entered by the user; the movie has no ID yet.
+     * @throws InvalidScriptException If the method is running in script mode and the input is invalid.
+     */
+    public static Map.Entry<Integer, Movie> readMovieLine(BasicReader basicReader, boolean inScriptMode, int number) throws InvalidScriptException {
+        Map.Entry<Integer, Movie> movieEntry = null;
+        while (movieEntry == null) {
+            String input = basicReader.readLine("Enter element №" + number);
+            try {
+                movieEntry = parseMovieLine(input);
+            } catch (WrongArgumentException e) {
+                StringBuilder errorMessage = new StringBuilder(e.getMessage());
+                errorMessage.delete(0, 2);
+                errorMessage.delete(errorMessage.length() - 2, errorMessage.length());
+                errorMessage.insert(0, "! element №" + number + ": ").append(" !");
+                if (inScriptMode) {
+                    throw new InvalidScriptException(errorMessage.toString());
+                } else {
+                    System.out.println(errorMessage);
+                }
+            }
+        }
+        return movieEntry;
+    }
+
+    private static Map.Entry<Integer, Movie> parseMovieLine(String line) throws WrongArgumentException {
+        String[] fields = line.split(";", -1);
+        if (fields.length != 11)
+            throw new WrongArgumentException("expected 11 fields separated by ';', got " + fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+        try {
+            Integer key = Integer.parseInt(fields[0]);
+            MovieArgumentChecker.checkKey(key);
+            Coordinates coordinates = new Coordinates(Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+            long oscarsCount = Long.parseLong(fields[4]);
+            MovieGenre movieGenre;
+            MpaaRating mpaaRating;
+            try {
+                movieGenre = MovieGenre.valueOf(fields[5].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new WrongArgumentException("wrong movie genre");
+            }
+            try {
+                mpaaRating = MpaaRating.valueOf(fields[6].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new WrongArgumentException("wrong MPAA rating");
+            }
+            LocalDateTime birthday = LocalDate.parse(fields[8], DateTimeFormatter.ofPattern("dd.MM.yyyy")).atStartOfDay();
+            Integer weight = fields[9].equals("") ? null : Integer.parseInt(fields[9]);
+            String passportID = fields[10].equals("") ? null : fields[10];
+            Person director = new Person(fields[7], birthday, weight, passportID);
+            return Map.entry(key, new Movie(fields[1], coordinates, oscarsCount, movieGenre, mpaaRating, director));
+        } catch (NumberFormatException e) {
+            throw new WrongArgumentException("not an integer");
+        } catch (DateTimeParseException e) {
+            throw new WrongArgumentException("wrong date format");
+        }
+    }
 }
@@ -1,9 +1,11 @@
 package sources.client;
 
 import sources.models.Movie;
+import sources.receiver.MovieCursor;
+import sources.receiver.MoviePage;
 
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -27,28 +29,41 @@ public class PrettyPrinter {
     static final String passportIDFormat = "%20s |";
 
     /**
-     * Prints the movie data stored in a HashMap in a user-friendly way.
+     * Prints the keys and movies a cursor walks over in a user-friendly way, in the cursor's order.
      *
-     * @param hashMap the HashMap containing the movie data
+     * @param movieCursor the cursor over the movie data
      */
-    static void printMovieHashMap(HashMap<Integer, Movie> hashMap) {
+    static void printMovieCursor(MovieCursor movieCursor) {
         System.out.printf(keyFormat, "Key");
         printMovieParamNames();
         System.out.println("-".repeat(165));
 
-        for (Integer key : hashMap.keySet()) {
-            Movie movie = hashMap.get(key);
-            System.out.printf(keyFormat, key);
-            printMovieParams(movie);
+        while (movieCursor.advance()) {
+            System.out.printf(keyFormat, movieCursor.key());
+            printMovieParams(movieCursor.value());
         }
     }
 
     /**
-     * Prints the movie data stored in a List in a user-friendly way.
+     * Prints a page of movies like {@link #printMovieCursor(MovieCursor)}, followed by a hint if more pages follow.
      *
-     * @param movieList the List containing the movie data
+     * @param moviePage the page of movies to print
+     */
+    static void printMoviePage(MoviePage moviePage) {
+        printMovieCursor(moviePage.cursor());
+        if (moviePage.hasMore()) {
+            System.out.println("*type 'next' to see the next page*");
+        } else {
+            System.out.println("*end of collection*");
+        }
+    }
+
+    /**
+     * Prints the movie data stored in a Collection in a user-friendly way, in the collection's iteration order.
+     *
+     * @param movieList the Collection containing the movie data
      */
-    public static void printMovieList(List<Movie> movieList) {
+    public static void printMovieList(Collection<Movie> movieList) {
         printMovieParamNames();
         System.out.println("-".repeat(158));
 
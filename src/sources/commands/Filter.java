@@ -0,0 +1,39 @@
+package sources.commands;
+
+import sources.client.Client;
+import sources.models.Movie;
+import sources.models.MovieGenre;
+import sources.models.MpaaRating;
+import sources.receiver.Receiver;
+
+import java.util.List;
+
+public class Filter extends AbstractCommandWithResult<List<Movie>> {
+    private final MovieGenre movieGenre;
+    private final MpaaRating mpaaRating;
+    private List<Movie> result = null;
+
+    public Filter(Client client, Receiver receiver, MovieGenre movieGenre, MpaaRating mpaaRating) {
+        super("filter", client, receiver);
+        this.movieGenre = movieGenre;
+        this.mpaaRating = mpaaRating;
+    }
+
+    @Override
+    public void execute() {
+        result = receiver.filter(movieGenre, mpaaRating);
+    }
+
+    @Override
+    public List<Movie> getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + " {" +
+                "movieGenre=" + movieGenre +
+                ", mpaaRating=" + mpaaRating +
+                '}';
+    }
+}
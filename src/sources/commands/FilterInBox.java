@@ -0,0 +1,43 @@
+package sources.commands;
+
+import sources.client.Client;
+import sources.models.Movie;
+import sources.receiver.Receiver;
+
+import java.util.List;
+
+public class FilterInBox extends AbstractCommandWithResult<List<Movie>> {
+    private final int x1;
+    private final int y1;
+    private final int x2;
+    private final int y2;
+    private List<Movie> result = null;
+
+    public FilterInBox(Client client, Receiver receiver, int x1, int y1, int x2, int y2) {
+        super("filter_in_box", client, receiver);
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+    }
+
+    @Override
+    public void execute() {
+        result = receiver.filterInBox(x1, y1, x2, y2);
+    }
+
+    @Override
+    public List<Movie> getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + " {" +
+                "x1=" + x1 +
+                ", y1=" + y1 +
+                ", x2=" + x2 +
+                ", y2=" + y2 +
+                '}';
+    }
+}
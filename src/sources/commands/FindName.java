@@ -0,0 +1,34 @@
+package sources.commands;
+
+import sources.client.Client;
+import sources.models.Movie;
+import sources.receiver.Receiver;
+
+import java.util.List;
+
+public class FindName extends AbstractCommandWithResult<List<Movie>> {
+    private final String prefix;
+    private List<Movie> result = null;
+
+    public FindName(Client client, Receiver receiver, String prefix) {
+        super("find_name", client, receiver);
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void execute() {
+        result = receiver.findName(prefix);
+    }
+
+    @Override
+    public List<Movie> getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + " {" +
+                "prefix=" + prefix +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+package sources.commands;
+
+import sources.client.Client;
+import sources.exceptions.io.WrongArgumentException;
+import sources.exceptions.receiver.CollectionKeyException;
+import sources.models.Movie;
+import sources.receiver.Receiver;
+
+import java.util.Map;
+
+public class InsertBatch extends AbstractCommand {
+    private final Map<Integer, Movie> movies;
+
+    public InsertBatch(Client client, Receiver receiver, Map<Integer, Movie> movies) {
+        super("insert_batch", client, receiver);
+        this.movies = movies;
+    }
+
+    @Override
+    public void execute() throws CollectionKeyException, WrongArgumentException {
+        receiver.insertAll(movies);
+    }
+
+    @Override
+    public String toString() {
+        return name + " {" +
+                "size=" + movies.size() +
+                '}';
+    }
+}
@@ -0,0 +1,40 @@
+package sources.commands;
+
+import sources.client.Client;
+import sources.models.Movie;
+import sources.receiver.Receiver;
+
+import java.util.List;
+
+public class Nearest extends AbstractCommandWithResult<List<Movie>> {
+    private final int x;
+    private final int y;
+    private final int k;
+    private List<Movie> result = null;
+
+    public Nearest(Client client, Receiver receiver, int x, int y, int k) {
+        super("nearest", client, receiver);
+        this.x = x;
+        this.y = y;
+        this.k = k;
+    }
+
+    @Override
+    public void execute() {
+        result = receiver.nearest(x, y, k);
+    }
+
+    @Override
+    public List<Movie> getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + " {" +
+                "x=" + x +
+                ", y=" + y +
+                ", k=" + k +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package sources.commands;
+
+import sources.client.Client;
+import sources.receiver.MoviePage;
+import sources.receiver.Receiver;
+
+public class Next extends AbstractCommandWithResult<MoviePage> {
+    private MoviePage result = null;
+
+    public Next(Client client, Receiver receiver) {
+        super("next", client, receiver);
+    }
+
+    @Override
+    public void execute() {
+        result = receiver.next();
+    }
+
+    @Override
+    public MoviePage getResult() {
+        return result;
+    }
+}
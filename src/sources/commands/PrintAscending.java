@@ -4,10 +4,10 @@ import sources.client.Client;
 import sources.models.Movie;
 import sources.receiver.Receiver;
 
-import java.util.List;
+import java.util.Collection;
 
-public class PrintAscending extends AbstractCommandWithResult<List<Movie>> {
-    private List<Movie> result = null;
+public class PrintAscending extends AbstractCommandWithResult<Collection<Movie>> {
+    private Collection<Movie> result = null;
 
     public PrintAscending(Client client, Receiver receiver) {
         super("print_ascending", client, receiver);
@@ -19,7 +19,7 @@ public class PrintAscending extends AbstractCommandWithResult<List<Movie>> {
     }
 
     @Override
-    public List<Movie> getResult() {
+    public Collection<Movie> getResult() {
         return result;
     }
 }
@@ -4,10 +4,10 @@ import sources.client.Client;
 import sources.models.Movie;
 import sources.receiver.Receiver;
 
-import java.util.List;
+import java.util.Collection;
 
-public class PrintDescending extends AbstractCommandWithResult<List<Movie>> {
-    private List<Movie> result = null;
+public class PrintDescending extends AbstractCommandWithResult<Collection<Movie>> {
+    private Collection<Movie> result = null;
 
     public PrintDescending(Client client, Receiver receiver) {
         super("print_descending", client, receiver);
@@ -19,7 +19,7 @@ public class PrintDescending extends AbstractCommandWithResult<List<Movie>> {
     }
 
     @Override
-    public List<Movie> getResult() {
+    public Collection<Movie> getResult() {
         return result;
     }
 }
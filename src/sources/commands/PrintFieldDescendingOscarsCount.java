@@ -7,19 +7,31 @@ import sources.receiver.Receiver;
 import java.util.List;
 
 public class PrintFieldDescendingOscarsCount extends AbstractCommandWithResult<List<Movie>> {
+    private final int limit;
+    private final int offset;
     private List<Movie> result = null;
 
-    public PrintFieldDescendingOscarsCount(Client client, Receiver receiver) {
+    public PrintFieldDescendingOscarsCount(Client client, Receiver receiver, int limit, int offset) {
         super("print_field_descending_oscars_count", client, receiver);
+        this.limit = limit;
+        this.offset = offset;
     }
 
     @Override
     public void execute() {
-        result = receiver.printFieldDescendingOscarsCount();
+        result = receiver.printFieldDescendingOscarsCount(limit, offset);
     }
 
     @Override
     public List<Movie> getResult() {
         return result;
     }
+
+    @Override
+    public String toString() {
+        return name + " {" +
+                "limit=" + limit +
+                ", offset=" + offset +
+                '}';
+    }
 }
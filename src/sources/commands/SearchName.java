@@ -0,0 +1,34 @@
+package sources.commands;
+
+import sources.client.Client;
+import sources.models.Movie;
+import sources.receiver.Receiver;
+
+import java.util.List;
+
+public class SearchName extends AbstractCommandWithResult<List<Movie>> {
+    private final String substring;
+    private List<Movie> result = null;
+
+    public SearchName(Client client, Receiver receiver, String substring) {
+        super("search_name", client, receiver);
+        this.substring = substring;
+    }
+
+    @Override
+    public void execute() {
+        result = receiver.searchName(substring);
+    }
+
+    @Override
+    public List<Movie> getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + " {" +
+                "substring=" + substring +
+                '}';
+    }
+}
@@ -1,25 +1,45 @@
 package sources.commands;
 
 import sources.client.Client;
-import sources.models.Movie;
+import sources.receiver.MoviePage;
 import sources.receiver.Receiver;
 
-import java.util.HashMap;
-
-public class Show extends AbstractCommandWithResult<HashMap<Integer, Movie>> {
-    private HashMap<Integer, Movie> result = null;
+public class Show extends AbstractCommandWithResult<MoviePage> {
+    private final Integer offset;
+    private final Integer limit;
+    private MoviePage result = null;
 
     public Show(Client client, Receiver receiver) {
+        this(client, receiver, null, null);
+    }
+
+    public Show(Client client, Receiver receiver, Integer offset, Integer limit) {
         super("show", client, receiver);
+        this.offset = offset;
+        this.limit = limit;
     }
 
     @Override
     public void execute() {
-        result = receiver.show();
+        if (offset == null) {
+            result = receiver.show();
+        } else {
+            result = receiver.show(offset, limit);
+        }
     }
 
     @Override
-    public HashMap<Integer, Movie> getResult() {
+    public MoviePage getResult() {
         return result;
     }
+
+    @Override
+    public String toString() {
+        if (offset == null)
+            return name;
+        return name + " {" +
+                "offset=" + offset +
+                ", limit=" + limit +
+                '}';
+    }
 }
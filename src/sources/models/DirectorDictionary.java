@@ -0,0 +1,157 @@
+package sources.models;
+
+import java.util.HashMap;
+
+/**
+ * The DirectorDictionary class deduplicates directors, so that movies by the same director share one Person
+ * instance together with its strings and dates. It counts how many movies refer to each distinct director
+ * and keeps an estimate of the heap memory saved by sharing.
+ * <p>
+ * Since Person is immutable, a shared instance can be neither changed for one movie only nor moved to another
+ * hash bucket. The dictionary is not synchronized, but its statistics are published through volatile fields
+ * and can be read by any thread.
+ */
+public class DirectorDictionary {
+    private static final long OBJECT_HEADER = 16;
+    private static final long PERSON_SIZE = OBJECT_HEADER + 16;
+    private static final long LOCAL_DATE_TIME_SIZE = 3 * (OBJECT_HEADER + 8);
+    private static final long INTEGER_SIZE = OBJECT_HEADER;
+
+    private final HashMap<Person, Entry> entries = new HashMap<>();
+    private volatile int distinctDirectors = 0;
+    private volatile long sharedReferences = 0;
+    private volatile long bytesSaved = 0;
+
+    /**
+     * Returns the registered instance equal to the specified director, or the director itself if none is registered.
+     *
+     * @param director the director to look up
+     * @return the shared instance equal to the director, or the director itself
+     */
+    public Person intern(Person director) {
+        Entry entry = entries.get(director);
+        return entry == null ? director : entry.director;
+    }
+
+    /**
+     * Records one more movie that refers to the specified director. The director is registered
+     * as the shared instance if no equal director is registered yet.
+     *
+     * @param director the director of the stored movie
+     * @return true if the director was registered, false if an equal director was registered before
+     */
+    public boolean acquire(Person director) {
+        Entry entry = entries.get(director);
+        if (entry == null) {
+            entries.put(director, new Entry(director));
+            distinctDirectors = entries.size();
+            return true;
+        }
+        entry.references += 1;
+        sharedReferences += 1;
+        bytesSaved += entry.footprint;
+        return false;
+    }
+
+    /**
+     * Records that a movie which referred to the specified director was removed.
+     * The director is forgotten once no movie refers to it.
+     *
+     * @param director the director of the removed movie
+     * @return true if the director was forgotten, false if other movies still refer to it
+     */
+    public boolean release(Person director) {
+        Entry entry = entries.get(director);
+        if (entry == null)
+            return false;
+        if (entry.references == 1) {
+            entries.remove(director);
+            distinctDirectors = entries.size();
+            return true;
+        }
+        entry.references -= 1;
+        sharedReferences -= 1;
+        bytesSaved -= entry.footprint;
+        return false;
+    }
+
+    /**
+     * Returns the number of movies that refer to the specified director.
+     *
+     * @param director the director to look up
+     * @return the number of movies that refer to the director, 0 if it is not registered
+     */
+    public int getReferences(Person director) {
+        Entry entry = entries.get(director);
+        return entry == null ? 0 : entry.references;
+    }
+
+    /**
+     * Forgets all directors.
+     */
+    public void clear() {
+        entries.clear();
+        distinctDirectors = 0;
+        sharedReferences = 0;
+        bytesSaved = 0;
+    }
+
+    /**
+     * Returns the number of distinct directors.
+     *
+     * @return the number of distinct directors
+     */
+    public int size() {
+        return distinctDirectors;
+    }
+
+    /**
+     * Returns the number of movies that share their director with an earlier movie.
+     *
+     * @return the number of shared director references
+     */
+    public long getSharedReferences() {
+        return sharedReferences;
+    }
+
+    /**
+     * Returns an estimate of the heap memory saved by sharing directors, in bytes.
+     *
+     * @return the estimated number of bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Estimates the heap memory taken by a director together with the objects only it refers to.
+     *
+     * @param director the director to estimate
+     * @return the estimated size in bytes
+     */
+    private static long footprint(Person director) {
+        long size = PERSON_SIZE + LOCAL_DATE_TIME_SIZE + stringSize(director.getName()) + stringSize(director.getPassportID());
+        Integer weight = director.getWeight();
+        if (weight != null && (weight < -128 || weight > 127))
+            size += INTEGER_SIZE;
+        return size;
+    }
+
+    private static long stringSize(String value) {
+        if (value == null)
+            return 0;
+        long arraySize = (OBJECT_HEADER + value.length() * (value.chars().allMatch(c -> c < 256) ? 1L : 2L) + 7) & ~7L;
+        return OBJECT_HEADER + 8 + arraySize;
+    }
+
+    private static class Entry {
+        private final Person director;
+        private final long footprint;
+        private int references = 1;
+
+        private Entry(Person director) {
+            this.director = director;
+            this.footprint = footprint(director);
+        }
+    }
+}
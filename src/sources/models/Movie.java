@@ -1,17 +1,16 @@
 package sources.models;
 
 import sources.exceptions.io.WrongArgumentException;
-import sources.receiver.MovieCollection;
 
 import java.time.ZonedDateTime;
-import java.util.Objects;
+import java.util.Locale;
 
 import static sources.models.helpers.MovieArgumentChecker.*;
 
 public class Movie implements Comparable<Movie> {
-    private static Integer nextID = 1;
     private Integer id; //Поле не может быть null, Значение поля должно быть больше 0, Значение этого поля должно быть уникальным, Значение этого поля должно генерироваться автоматически
     private String name; //Поле не может быть null, Строка не может быть пустой
+    private String sortKey; //Название в нижнем регистре, по нему сравниваются фильмы
     private Coordinates coordinates; //Поле не может быть null
     private java.time.ZonedDateTime creationDate; //Поле не может быть null, Значение этого поля должно генерироваться автоматически
     private long oscarsCount; //Значение поля должно быть больше 0
@@ -19,10 +18,14 @@ public class Movie implements Comparable<Movie> {
     private MpaaRating mpaaRating; //Поле не может быть null
     private Person director; //Поле не может быть null
 
+    protected Movie() {
+    }
+
     public Movie(String name, Coordinates coordinates, long oscarsCount, MovieGenre genre, MpaaRating mpaaRating,
                  Person director) throws WrongArgumentException {
         checkArguments(name, coordinates, oscarsCount, genre, mpaaRating, director);
         this.name = name;
+        this.sortKey = toSortKey(name);
         this.coordinates = coordinates;
         this.creationDate = ZonedDateTime.now();
         this.oscarsCount = oscarsCount;
@@ -36,6 +39,7 @@ public class Movie implements Comparable<Movie> {
         checkArguments(id, name, coordinates, oscarsCount, genre, mpaaRating, director);
         this.id = id;
         this.name = name;
+        this.sortKey = toSortKey(name);
         this.coordinates = coordinates;
         this.creationDate = ZonedDateTime.now();
         this.oscarsCount = oscarsCount;
@@ -44,22 +48,13 @@ public class Movie implements Comparable<Movie> {
         this.director = director;
     }
 
-    public static void updateNextId(MovieCollection movieCollection) {
-        int maxID = movieCollection
-                .getMovieHashMap().values()
-                .stream().filter(Objects::nonNull)
-                .map(Movie::getID)
-                .mapToInt(Integer::intValue).max().orElse(0);
-        nextID = maxID + 1;
-    }
-
     public Integer getID() {
         return id;
     }
 
-    public void setID() {
-        this.id = nextID;
-        nextID += 1;
+    public void setID(Integer id) throws WrongArgumentException {
+        checkID(id);
+        this.id = id;
     }
 
     public String getName() {
@@ -69,6 +64,15 @@ public class Movie implements Comparable<Movie> {
     public void setName(String name) throws WrongArgumentException {
         checkName(name);
         this.name = name;
+        this.sortKey = toSortKey(name);
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public static String toSortKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
     }
 
     public Coordinates getCoordinates() {
@@ -126,23 +130,23 @@ public class Movie implements Comparable<Movie> {
 
     @Override
     public int compareTo(Movie movie) {
-        int nameCompare = this.name.toLowerCase().compareTo(movie.name.toLowerCase());
+        int nameCompare = this.getSortKey().compareTo(movie.getSortKey());
         if (nameCompare == 0)
-            return (int) (this.getOscarsCount() - movie.getOscarsCount());
-        return this.name.toLowerCase().compareTo(movie.name.toLowerCase());
+            return Long.compare(this.getOscarsCount(), movie.getOscarsCount());
+        return nameCompare;
     }
 
     @Override
     public String toString() {
         return "Movie{" +
-                "id=" + id +
-                ", name='" + name + '\'' +
-                ", coordinates=" + coordinates +
-                ", creationDate=" + creationDate +
-                ", oscarsCount=" + oscarsCount +
-                ", genre=" + genre +
-                ", mpaaRating=" + mpaaRating +
-                ", director=" + director +
+                "id=" + getID() +
+                ", name='" + getName() + '\'' +
+                ", coordinates=" + getCoordinates() +
+                ", creationDate=" + getCreationDate() +
+                ", oscarsCount=" + getOscarsCount() +
+                ", genre=" + getGenre() +
+                ", mpaaRating=" + getMpaaRating() +
+                ", director=" + getDirector() +
                 '}';
     }
 }
@@ -3,14 +3,19 @@ package sources.models;
 import sources.exceptions.io.WrongArgumentException;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 import static sources.models.helpers.PersonArgumentChecker.*;
 
-public class Person {
-    private String name; //Поле не может быть null, Строка не может быть пустой
-    private java.time.LocalDateTime birthday; //Поле не может быть null
-    private Integer weight; //Поле может быть null, Значение поля должно быть больше 0
-    private String passportID; //Длина строки не должна быть больше 32, Длина строки должна быть не меньше 7, Значение этого поля должно быть уникальным, Поле может быть null
+/**
+ * The Person class represents the director of a movie. A Person is immutable: equal directors are shared
+ * between movies and used as keys of the DirectorDictionary, so a changed director is a new instance.
+ */
+public final class Person {
+    private final String name; //Поле не может быть null, Строка не может быть пустой
+    private final java.time.LocalDateTime birthday; //Поле не может быть null
+    private final Integer weight; //Поле может быть null, Значение поля должно быть больше 0
+    private final String passportID; //Длина строки не должна быть больше 32, Длина строки должна быть не меньше 7, Значение этого поля должно быть уникальным, Поле может быть null
 
     public Person(String name, LocalDateTime birthday, Integer weight, String passportID) throws WrongArgumentException {
         checkArguments(name, birthday, weight, passportID);
@@ -24,36 +29,31 @@ public class Person {
         return name;
     }
 
-    public void setName(String name) throws WrongArgumentException {
-        checkName(name);
-        this.name = name;
-    }
-
     public LocalDateTime getBirthday() {
         return birthday;
     }
 
-    public void setBirthday(LocalDateTime birthday) throws WrongArgumentException {
-        checkBirthday(birthday);
-        this.birthday = birthday;
-    }
-
     public Integer getWeight() {
         return weight;
     }
 
-    public void setWeight(Integer weight) throws WrongArgumentException {
-        checkWeight(weight);
-        this.weight = weight;
-    }
-
     public String getPassportID() {
         return passportID;
     }
 
-    public void setPassportID(String passportID) throws WrongArgumentException {
-        checkPassportID(passportID);
-        this.passportID = passportID;
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Person person))
+            return false;
+        return Objects.equals(name, person.name) && Objects.equals(birthday, person.birthday)
+                && Objects.equals(weight, person.weight) && Objects.equals(passportID, person.passportID);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, birthday, weight, passportID);
     }
 
     @Override
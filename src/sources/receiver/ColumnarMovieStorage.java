@@ -0,0 +1,293 @@
+package sources.receiver;
+
+import sources.exceptions.io.WrongArgumentException;
+import sources.models.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+/**
+ * The ColumnarMovieStorage class stores movies as a struct of arrays: every field of Movie, Coordinates
+ * and Person lives in its own primitive column, and strings and time zones are dictionary-encoded. The sort key
+ * of the name has a column too, so movies are compared without decoding them; for a name that is its own sort
+ * key, both columns hold the same code.
+ * A record takes one row, so a stored movie costs no objects of its own. The dictionaries count the rows that
+ * use every value and forget a value when its last row is released.
+ * <p>
+ * Movies are handed out as read-only views that read their fields from the columns on demand. The columns
+ * are replaced, not resized in place, and published through volatile fields, so views and snapshots may
+ * read them from any thread.
+ */
+class ColumnarMovieStorage implements MovieStorage {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int NO_PASSPORT_ID = -1;
+    private static final MovieGenre[] GENRES = MovieGenre.values();
+    private static final MpaaRating[] RATINGS = MpaaRating.values();
+
+    private final ValueDictionary<String> strings = new ValueDictionary<>();
+    private final ValueDictionary<ZoneId> zones = new ValueDictionary<>();
+
+    private volatile int[] keys;
+    private volatile int[] ids;
+    private volatile int[] names;
+    private volatile int[] sortKeys;
+    private volatile int[] xs;
+    private volatile int[] ys;
+    private volatile long[] creationSeconds;
+    private volatile int[] creationNanos;
+    private volatile int[] creationZones;
+    private volatile long[] oscarsCounts;
+    private volatile byte[] genres;
+    private volatile byte[] mpaaRatings;
+    private volatile int[] directorNames;
+    private volatile long[] birthdaySeconds;
+    private volatile int[] birthdayNanos;
+    private volatile int[] weights;
+    private volatile int[] passportIDs;
+
+    private int rowCount;
+    private int[] freeRows = new int[DEFAULT_CAPACITY];
+    private int freeRowCount;
+
+    /**
+     * Constructs an empty ColumnarMovieStorage with the default capacity.
+     */
+    ColumnarMovieStorage() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public int add(int key, Movie movie) {
+        if (movie == null)
+            throw new NullPointerException("ColumnarMovieStorage does not store null values");
+        int row = allocateRow();
+        write(row, key, movie);
+        return row;
+    }
+
+    @Override
+    public void release(int row) {
+        strings.release(names[row]);
+        strings.release(sortKeys[row]);
+        strings.release(directorNames[row]);
+        if (passportIDs[row] != NO_PASSPORT_ID)
+            strings.release(passportIDs[row]);
+        zones.release(creationZones[row]);
+        if (freeRowCount == freeRows.length)
+            freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+        freeRows[freeRowCount++] = row;
+    }
+
+    @Override
+    public Movie get(int row, Generation generation) {
+        return new RowView(row, generation);
+    }
+
+    @Override
+    public int getKey(int row) {
+        return keys[row];
+    }
+
+    @Override
+    public int getID(int row) {
+        return ids[row];
+    }
+
+    @Override
+    public long getOscarsCount(int row) {
+        return oscarsCounts[row];
+    }
+
+    @Override
+    public MovieGenre getGenre(int row) {
+        return GENRES[genres[row]];
+    }
+
+    @Override
+    public MpaaRating getMpaaRating(int row) {
+        return RATINGS[mpaaRatings[row]];
+    }
+
+    @Override
+    public int getX(int row) {
+        return xs[row];
+    }
+
+    @Override
+    public int getY(int row) {
+        return ys[row];
+    }
+
+    @Override
+    public String getSortKey(int row) {
+        return strings.decode(sortKeys[row]);
+    }
+
+    @Override
+    public int compareSortKey(int row, String sortKey) {
+        return strings.decode(sortKeys[row]).compareTo(sortKey);
+    }
+
+    @Override
+    public boolean sortKeyStartsWith(int row, String prefix) {
+        return strings.decode(sortKeys[row]).startsWith(prefix);
+    }
+
+    @Override
+    public int compare(int row, int otherRow) {
+        int result = sortKeys[row] == sortKeys[otherRow] ? 0
+                : strings.decode(sortKeys[row]).compareTo(strings.decode(sortKeys[otherRow]));
+        return result != 0 ? result : Long.compare(oscarsCounts[row], oscarsCounts[otherRow]);
+    }
+
+    @Override
+    public int compare(int row, Movie movie) {
+        int result = strings.decode(sortKeys[row]).compareTo(movie.getSortKey());
+        return result != 0 ? result : Long.compare(oscarsCounts[row], movie.getOscarsCount());
+    }
+
+    @Override
+    public void ensureCapacity(int additionalSize) {
+        int expectedRows = rowCount + Math.max(additionalSize - freeRowCount, 0);
+        if (expectedRows > keys.length)
+            grow(expectedRows);
+    }
+
+    private void write(int row, int key, Movie movie) {
+        keys[row] = key;
+        ids[row] = movie.getID();
+        names[row] = strings.encode(movie.getName());
+        sortKeys[row] = strings.encode(movie.getSortKey());
+        xs[row] = movie.getCoordinates().getX();
+        ys[row] = movie.getCoordinates().getY();
+        ZonedDateTime creationDate = movie.getCreationDate();
+        creationSeconds[row] = creationDate.toEpochSecond();
+        creationNanos[row] = creationDate.getNano();
+        creationZones[row] = zones.encode(creationDate.getZone());
+        oscarsCounts[row] = movie.getOscarsCount();
+        genres[row] = (byte) movie.getGenre().ordinal();
+        mpaaRatings[row] = (byte) movie.getMpaaRating().ordinal();
+        Person director = movie.getDirector();
+        directorNames[row] = strings.encode(director.getName());
+        birthdaySeconds[row] = director.getBirthday().toEpochSecond(ZoneOffset.UTC);
+        birthdayNanos[row] = director.getBirthday().getNano();
+        weights[row] = director.getWeight();
+        passportIDs[row] = director.getPassportID() == null ? NO_PASSPORT_ID : strings.encode(director.getPassportID());
+    }
+
+    private int allocateRow() {
+        if (freeRowCount > 0)
+            return freeRows[--freeRowCount];
+        if (rowCount == keys.length)
+            grow(keys.length * 2);
+        return rowCount++;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        ids = new int[capacity];
+        names = new int[capacity];
+        sortKeys = new int[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+        creationSeconds = new long[capacity];
+        creationNanos = new int[capacity];
+        creationZones = new int[capacity];
+        oscarsCounts = new long[capacity];
+        genres = new byte[capacity];
+        mpaaRatings = new byte[capacity];
+        directorNames = new int[capacity];
+        birthdaySeconds = new long[capacity];
+        birthdayNanos = new int[capacity];
+        weights = new int[capacity];
+        passportIDs = new int[capacity];
+    }
+
+    private void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        sortKeys = Arrays.copyOf(sortKeys, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        creationSeconds = Arrays.copyOf(creationSeconds, capacity);
+        creationNanos = Arrays.copyOf(creationNanos, capacity);
+        creationZones = Arrays.copyOf(creationZones, capacity);
+        oscarsCounts = Arrays.copyOf(oscarsCounts, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        mpaaRatings = Arrays.copyOf(mpaaRatings, capacity);
+        directorNames = Arrays.copyOf(directorNames, capacity);
+        birthdaySeconds = Arrays.copyOf(birthdaySeconds, capacity);
+        birthdayNanos = Arrays.copyOf(birthdayNanos, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        passportIDs = Arrays.copyOf(passportIDs, capacity);
+    }
+
+    /**
+     * A read-only Movie that reads its fields from one row of the columns.
+     */
+    private class RowView extends MovieView {
+        private final int row;
+
+        private RowView(int row, Generation generation) {
+            super(generation);
+            this.row = row;
+        }
+
+        @Override
+        public Integer getID() {
+            return ids[row];
+        }
+
+        @Override
+        public String getName() {
+            return strings.decode(names[row]);
+        }
+
+        @Override
+        String readSortKey() {
+            return strings.decode(sortKeys[row]);
+        }
+
+        @Override
+        public Coordinates getCoordinates() {
+            return new Coordinates(xs[row], ys[row]);
+        }
+
+        @Override
+        public ZonedDateTime getCreationDate() {
+            Instant instant = Instant.ofEpochSecond(creationSeconds[row], creationNanos[row]);
+            return ZonedDateTime.ofInstant(instant, zones.decode(creationZones[row]));
+        }
+
+        @Override
+        public long getOscarsCount() {
+            return oscarsCounts[row];
+        }
+
+        @Override
+        public MovieGenre getGenre() {
+            return GENRES[genres[row]];
+        }
+
+        @Override
+        public MpaaRating getMpaaRating() {
+            return RATINGS[mpaaRatings[row]];
+        }
+
+        @Override
+        public Person getDirector() {
+            LocalDateTime birthday = LocalDateTime.ofEpochSecond(birthdaySeconds[row], birthdayNanos[row], ZoneOffset.UTC);
+            String passportID = passportIDs[row] == NO_PASSPORT_ID ? null : strings.decode(passportIDs[row]);
+            try {
+                return new Person(strings.decode(directorNames[row]), birthday, weights[row], passportID);
+            } catch (WrongArgumentException e) {
+                throw new IllegalStateException("stored director is invalid: " + e.getMessage());
+            }
+        }
+    }
+}
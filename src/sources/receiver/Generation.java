@@ -0,0 +1,11 @@
+package sources.receiver;
+
+/**
+ * The Generation class marks one published version of a MovieCollection. Every snapshot and every movie view
+ * holds the generation it was read from, and every generation holds the one published after it, so a generation
+ * stays reachable while anything that may still read it does. Storage rows that were retired while a generation
+ * was current are reused only after the garbage collector has found that generation unreachable.
+ */
+final class Generation {
+    Generation next;
+}
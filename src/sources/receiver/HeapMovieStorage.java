@@ -0,0 +1,125 @@
+package sources.receiver;
+
+import sources.models.Movie;
+import sources.models.MovieGenre;
+import sources.models.MpaaRating;
+
+import java.util.Arrays;
+
+/**
+ * The HeapMovieStorage class keeps movies as objects in an array indexed by row, next to an array of their keys.
+ * Released rows are kept on a stack and reused by later additions. The arrays are replaced, not resized in
+ * place, and published through volatile fields, so readers always see the rows that were stored before them.
+ */
+class HeapMovieStorage implements MovieStorage {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private volatile Movie[] movies = new Movie[DEFAULT_CAPACITY];
+    private volatile int[] keys = new int[DEFAULT_CAPACITY];
+    private int rowCount;
+    private int[] freeRows = new int[DEFAULT_CAPACITY];
+    private int freeRowCount;
+
+    @Override
+    public int add(int key, Movie movie) {
+        if (movie == null)
+            throw new NullPointerException("HeapMovieStorage does not store null values");
+        int row = allocateRow();
+        movies[row] = movie;
+        keys[row] = key;
+        return row;
+    }
+
+    @Override
+    public void release(int row) {
+        movies[row] = null;
+        if (freeRowCount == freeRows.length)
+            freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+        freeRows[freeRowCount++] = row;
+    }
+
+    @Override
+    public Movie get(int row, Generation generation) {
+        return movies[row];
+    }
+
+    @Override
+    public int getKey(int row) {
+        return keys[row];
+    }
+
+    @Override
+    public int getID(int row) {
+        return movies[row].getID();
+    }
+
+    @Override
+    public long getOscarsCount(int row) {
+        return movies[row].getOscarsCount();
+    }
+
+    @Override
+    public MovieGenre getGenre(int row) {
+        return movies[row].getGenre();
+    }
+
+    @Override
+    public MpaaRating getMpaaRating(int row) {
+        return movies[row].getMpaaRating();
+    }
+
+    @Override
+    public int getX(int row) {
+        return movies[row].getCoordinates().getX();
+    }
+
+    @Override
+    public int getY(int row) {
+        return movies[row].getCoordinates().getY();
+    }
+
+    @Override
+    public String getSortKey(int row) {
+        return movies[row].getSortKey();
+    }
+
+    @Override
+    public int compareSortKey(int row, String sortKey) {
+        return movies[row].getSortKey().compareTo(sortKey);
+    }
+
+    @Override
+    public boolean sortKeyStartsWith(int row, String prefix) {
+        return movies[row].getSortKey().startsWith(prefix);
+    }
+
+    @Override
+    public int compare(int row, int otherRow) {
+        return movies[row].compareTo(movies[otherRow]);
+    }
+
+    @Override
+    public int compare(int row, Movie movie) {
+        return movies[row].compareTo(movie);
+    }
+
+    @Override
+    public void ensureCapacity(int additionalSize) {
+        int expectedRows = rowCount + Math.max(additionalSize - freeRowCount, 0);
+        if (expectedRows > movies.length)
+            grow(expectedRows);
+    }
+
+    private int allocateRow() {
+        if (freeRowCount > 0)
+            return freeRows[--freeRowCount];
+        if (rowCount == movies.length)
+            grow(movies.length * 2);
+        return rowCount++;
+    }
+
+    private void grow(int capacity) {
+        movies = Arrays.copyOf(movies, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+    }
+}
@@ -0,0 +1,49 @@
+package sources.receiver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The IdAllocator class hands out the IDs of the movies of one collection. IDs are allocated with a single
+ * atomic increment, so concurrent inserts never receive the same ID, and every collection has its own sequence.
+ * The next ID is saved together with the collection, so that IDs of removed movies are not handed out again.
+ */
+public class IdAllocator {
+    private final AtomicInteger nextID = new AtomicInteger(1);
+
+    /**
+     * Returns a new ID that has not been allocated or reserved before.
+     *
+     * @return the allocated ID
+     */
+    public int allocate() {
+        return nextID.getAndIncrement();
+    }
+
+    /**
+     * Marks the specified ID as used, so that it is never allocated.
+     *
+     * @param id the ID in use
+     */
+    public void reserve(int id) {
+        advanceTo(id + 1);
+    }
+
+    /**
+     * Moves the sequence forward so that the next allocated ID is not lower than the specified one.
+     * The sequence never moves backwards.
+     *
+     * @param id the lowest ID that may be allocated next
+     */
+    public void advanceTo(int id) {
+        nextID.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Returns the ID that will be allocated next, without allocating it.
+     *
+     * @return the next ID
+     */
+    public int getNextID() {
+        return nextID.get();
+    }
+}
@@ -1,23 +1,85 @@
 package sources.receiver;
 
-import sources.models.Movie;
+import sources.exceptions.io.WrongArgumentException;
+import sources.models.*;
 
+import java.lang.ref.WeakReference;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * The MovieCollection class represents a collection of movies stored in a HashMap with Integer keys.
+ * The MovieCollection class represents a collection of movies stored in a MovieStorage with int keys.
  * It provides methods for adding, removing, and retrieving movies from the collection.
+ * Every movie occupies a row of the storage, and the indexes refer to movies by their rows, so a movie is kept
+ * only once, in the layout of the storage. Keys are mapped to rows in a persistent B+ tree, which gives
+ * key-ordered iteration and range removals, and rows are kept in persistent trees sorted by the natural order
+ * of their movies and by oscarsCount for the print commands. IDs are mapped to rows in another persistent tree.
+ * For every genre and MPAA rating a persistent bitmap of storage rows is kept, so that filters are answered by
+ * intersecting bitmaps whose size depends on the number of rows rather than on the values of the IDs,
+ * and a persistent quadtree over the coordinates answers box and nearest-neighbour queries.
+ * Passport IDs are mapped to the director that holds them, which keeps them unique among distinct directors
+ * at the cost of one hash lookup per stored movie. Counts per genre and rating and the Oscars total are kept
+ * up to date on every mutation and published with each snapshot as {@link MovieStatistics}. Names are searched
+ * by prefix in the sorted index and by substring through a persistent trigram index from the sort keys to the rows.
+ * All per-movie indexes are made of int arrays and int tree nodes, so a storage that keeps its movies off the
+ * heap leaves no object per movie there; only distinct directors are kept as objects.
+ * <p>
+ * The collection is thread-safe. Every mutation runs under the write lock of a read-write lock, so each mutation,
+ * including the bulk removals, is atomic; only the director dictionary is read under its read lock. After every
+ * mutation the current versions of all indexes except the passport IDs, which only mutations consult, are
+ * published as a {@link MovieCollectionSnapshot}, and every query of the collection reads that snapshot:
+ * taking it is a volatile read and never waits for writers.
+ * Movies must not be modified once they are added, since snapshots share them.
+ * <p>
+ * A row that is replaced or removed is retired rather than freed, since older snapshots and movies read from
+ * them may still refer to it. Every snapshot and view holds the {@link Generation} it was read in, and retired
+ * rows are handed back to the storage once the garbage collector has cleared their generation.
  */
 public class MovieCollection {
-    private HashMap<Integer, Movie> movieHashMap = new HashMap<>();
+    private final StorageMode storageMode;
+    private MovieStorage movieStorage;
+    private PersistentIntTree idRows = new PersistentIntTree(Integer::compare);
+    private final DirectorDictionary directorDictionary = new DirectorDictionary();
+    private final IdAllocator idAllocator = new IdAllocator();
+    private final PersistentBitmap[] genreIndex = new PersistentBitmap[MovieGenre.values().length];
+    private final PersistentBitmap[] mpaaRatingIndex = new PersistentBitmap[MpaaRating.values().length];
+    private PointQuadtree coordinatesIndex = new PointQuadtree();
+    private final HashMap<String, Person> passportIDIndex = new HashMap<>();
+    private TrigramIndex nameIndex = new TrigramIndex();
+    private final int[] genreCounts = new int[MovieGenre.values().length];
+    private final int[] mpaaRatingCounts = new int[MpaaRating.values().length];
+    private long oscarsCountTotal;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private PersistentIntTree keyRows;
+    private PersistentIntTree sortedRows;
+    private PersistentIntTree oscarsCountRows;
+    private Generation generation = new Generation();
+    private final ArrayDeque<RetiredRows> retiredRows = new ArrayDeque<>();
+    private RetiredRows retiring;
     private java.time.ZonedDateTime creationDate;
+    private volatile MovieCollectionSnapshot snapshot;
 
     /**
-     * Constructs an empty MovieCollection object and sets the creation date to the current time.
+     * Constructs an empty MovieCollection object kept on the heap and sets the creation date to the current time.
      */
     public MovieCollection() {
+        this(StorageMode.HEAP);
+    }
+
+    /**
+     * Constructs an empty MovieCollection object kept in a storage of the specified mode and sets the creation date
+     * to the current time.
+     *
+     * @param storageMode the layout to keep the movies in
+     */
+    public MovieCollection(StorageMode storageMode) {
+        this.storageMode = storageMode;
         this.creationDate = ZonedDateTime.now();
+        createStorage();
+        Arrays.fill(genreIndex, PersistentBitmap.EMPTY);
+        Arrays.fill(mpaaRatingIndex, PersistentBitmap.EMPTY);
+        publish();
     }
 
     /**
@@ -25,58 +87,224 @@ public class MovieCollection {
      *
      * @param key the key to associate with the movie
      * @param movie the movie to add to the collection
+     * @throws WrongArgumentException if the passport ID of the director belongs to another director
+     */
+    public void put(int key, Movie movie) throws WrongArgumentException {
+        lock.writeLock().lock();
+        try {
+            store(key, movie);
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a movie to the collection with the specified key if the key is not present in the collection yet.
+     *
+     * @param key the key to associate with the movie
+     * @param movie the movie to add to the collection
+     * @return true if the movie was added, false if the key is already present in the collection
+     * @throws WrongArgumentException if the passport ID of the director belongs to another director
+     */
+    public boolean putIfAbsent(int key, Movie movie) throws WrongArgumentException {
+        lock.writeLock().lock();
+        try {
+            if (keyRows.get(key) != PersistentIntTree.MISSING)
+                return false;
+            store(key, movie);
+            publish();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds all the movies to the collection if none of their keys is present in the collection yet.
+     * The whole batch is checked before anything is stored, so either all movies are added or none;
+     * the storage is sized for the batch up front and the snapshot is published once at the end.
+     *
+     * @param movies the movies to add, mapped by their keys
+     * @return true if the movies were added, false if any of the keys is already present in the collection
+     * @throws WrongArgumentException if the passport ID of a director belongs to another director
      */
-    public void put(Integer key, Movie movie) {
-        movieHashMap.put(key, movie);
+    public boolean putAllIfAbsent(Map<Integer, Movie> movies) throws WrongArgumentException {
+        lock.writeLock().lock();
+        try {
+            HashMap<String, Person> batchPassportIDs = new HashMap<>();
+            for (Map.Entry<Integer, Movie> entry : movies.entrySet()) {
+                if (keyRows.get(entry.getKey()) != PersistentIntTree.MISSING)
+                    return false;
+                Person director = entry.getValue().getDirector();
+                checkPassportID(director, null);
+                if (director.getPassportID() != null) {
+                    Person holder = batchPassportIDs.putIfAbsent(director.getPassportID(), director);
+                    if (holder != null && !holder.equals(director))
+                        throw new WrongArgumentException("passport ID must be unique");
+                }
+            }
+            reclaimRows();
+            movieStorage.ensureCapacity(movies.size());
+            for (Map.Entry<Integer, Movie> entry : movies.entrySet()) {
+                store(entry.getKey(), entry.getValue());
+            }
+            publish();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the movie that has the same ID as the specified movie. The replacing movie keeps the key
+     * and the creation date of the replaced one.
+     *
+     * @param movie the movie to store in place of the movie with the same ID
+     * @return true if the movie was replaced, false if no movie with the ID is present in the collection
+     * @throws WrongArgumentException if the passport ID of the director belongs to another director
+     */
+    public boolean update(Movie movie) throws WrongArgumentException {
+        lock.writeLock().lock();
+        try {
+            int row = idRows.get(movie.getID());
+            if (row == PersistentIntTree.MISSING)
+                return false;
+            movie.setCreationDate(movieStorage.get(row, generation).getCreationDate());
+            store(movieStorage.getKey(row), movie);
+            publish();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
      * Returns the movie associated with the specified key, or null if the key is not present in the collection.
+     * The movie is looked up in the current snapshot, so no lock is taken.
      *
      * @param key the key of the movie to retrieve
      * @return the movie associated with the key, or null if the key is not present in the collection
      */
-    public Movie getElementByKey(Integer key) {
-        return movieHashMap.get(key);
+    public Movie getElementByKey(int key) {
+        return snapshot.get(key);
     }
 
     /**
      * Returns the movie with the specified ID, or null if no movie with the ID is present in the collection.
+     * The movie is looked up in the current snapshot, so no lock is taken.
      *
      * @param id the ID of the movie to retrieve
      * @return the movie with the specified ID, or null if no movie with the ID is present in the collection
      */
     public Movie getElementByID(Integer id) {
-        for (Movie movie : movieHashMap.values()) {
-            if (Objects.equals(movie.getID(), id))
-                return movie;
-        }
-        return null;
+        return snapshot.getByID(id);
+    }
+
+    /**
+     * Returns the key of the movie with the specified ID, or null if no movie with the ID is present in the collection.
+     * The key is looked up in the current snapshot, so no lock is taken.
+     *
+     * @param id the ID of the movie to look up
+     * @return the key of the movie with the specified ID, or null if no movie with the ID is present in the collection
+     */
+    public Integer getKeyByID(Integer id) {
+        return snapshot.getKeyByID(id);
     }
 
     /**
      * Removes the movie associated with the specified key from the collection.
      *
      * @param key the key of the movie to remove
+     * @return true if a movie was removed, false if the key is not present in the collection
      */
-    public void remove(Integer key) {
-        movieHashMap.remove(key);
+    public boolean remove(int key) {
+        lock.writeLock().lock();
+        try {
+            if (!delete(key))
+                return false;
+            publish();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
      * Removes all movies from the collection.
      */
     public void clear() {
-        movieHashMap.clear();
+        lock.writeLock().lock();
+        try {
+            createStorage();
+            idRows = new PersistentIntTree(Integer::compare);
+            Arrays.fill(genreIndex, PersistentBitmap.EMPTY);
+            Arrays.fill(mpaaRatingIndex, PersistentBitmap.EMPTY);
+            coordinatesIndex = new PointQuadtree();
+            passportIDIndex.clear();
+            nameIndex = new TrigramIndex();
+            Arrays.fill(genreCounts, 0);
+            Arrays.fill(mpaaRatingCounts, 0);
+            oscarsCountTotal = 0;
+            directorDictionary.clear();
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the instance of the specified director that is shared by the movies of the collection,
+     * or the director itself if no movie of the collection has an equal director.
+     *
+     * @param director the director to look up
+     * @return the shared instance equal to the director, or the director itself
+     */
+    public Person internDirector(Person director) {
+        lock.readLock().lock();
+        try {
+            return directorDictionary.intern(director);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a new ID for a movie of this collection. IDs of movies added with an explicit ID are never returned.
+     *
+     * @return the allocated ID
+     */
+    public int allocateID() {
+        return idAllocator.allocate();
     }
 
     /**
-     * Returns the HashMap containing the movies in the collection.
+     * Returns the allocator of the IDs of this collection, which is saved and restored together with the collection.
      *
-     * @return the HashMap containing the movies in the collection
+     * @return the ID allocator of the collection
      */
-    public HashMap<Integer, Movie> getMovieHashMap() {
-        return movieHashMap;
+    public IdAllocator getIdAllocator() {
+        return idAllocator;
+    }
+
+    /**
+     * Returns the dictionary of the directors of the movies in the collection.
+     * Its statistics may be read without locking; it must not be modified outside the collection.
+     *
+     * @return the dictionary of the directors of the movies in the collection
+     */
+    public DirectorDictionary getDirectorDictionary() {
+        return directorDictionary;
+    }
+
+    /**
+     * Returns the current version of the collection. The snapshot never changes, and later
+     * modifications of the collection do not wait for its readers.
+     *
+     * @return an immutable snapshot of the collection
+     */
+    public MovieCollectionSnapshot snapshot() {
+        return snapshot;
     }
 
     /**
@@ -85,7 +313,7 @@ public class MovieCollection {
      * @return the number of movies in the collection
      */
     public int length() {
-        return movieHashMap.size();
+        return snapshot.size();
     }
 
     /**
@@ -94,7 +322,7 @@ public class MovieCollection {
      * @return the date and time the collection was created
      */
     public ZonedDateTime getCreationDate() {
-        return creationDate;
+        return snapshot.getCreationDate();
     }
 
     /**
@@ -103,102 +331,348 @@ public class MovieCollection {
      * @param creationDate the new creation date and time
      */
     public void setCreationDate(ZonedDateTime creationDate) {
-        this.creationDate = creationDate;
+        lock.writeLock().lock();
+        try {
+            this.creationDate = creationDate;
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
-     * Removes all movies with a rating greater than the specified movie from the collection.
+     * Removes all movies greater than the specified movie from the collection.
+     * The split point is located in the sorted index, so only the removed movies are visited.
      *
      * @param movie the movie to compare against
      * @return the number of movies removed from the collection
      */
     public int removeGreater(Movie movie) {
-        HashMap<Integer, Movie> newMovieHashMap = new HashMap<>(movieHashMap);
-        int count = 0;
-        for (Integer key : movieHashMap.keySet()) {
-            if (getElementByKey(key).compareTo(movie) > 0) {
-                newMovieHashMap.remove(key);
-                count += 1;
+        lock.writeLock().lock();
+        try {
+            int start = sortedRows.headSize(row -> movieStorage.compare(row, movie) <= 0 ? -1 : 1);
+            int[] greaterKeys = new int[sortedRows.size() - start];
+            PersistentIntTree.Cursor cursor = sortedRows.cursor(start);
+            for (int i = 0; cursor.advance(); i++) {
+                greaterKeys[i] = movieStorage.getKey(cursor.element());
+            }
+            for (int greaterKey : greaterKeys) {
+                delete(greaterKey);
             }
+            publish();
+            return greaterKeys.length;
+        } finally {
+            lock.writeLock().unlock();
         }
-        movieHashMap = newMovieHashMap;
-        return count;
     }
 
     /**
      * Replaces the value associated with the specified key in this map with
      * the specified value if the current value is greater than the specified value.
+     * The replacing movie gets a freshly generated ID before it is stored.
      *
      * @param key the key with which the specified value is associated
      * @param movie the value to be associated with the specified key
-     * @return true if the value was replaced, false otherwise
+     * @return true if the value was replaced, false otherwise or if the key is not present in the collection
+     * @throws WrongArgumentException if the IDs of the collection are exhausted or
+     * the passport ID of the director belongs to another director
      */
-    public boolean replaceIfLowe(Integer key, Movie movie) {
-        if (getElementByKey(key).compareTo(movie) > 0) {
-            put(key, movie);
-            return true;
+    public boolean replaceIfLowe(Integer key, Movie movie) throws WrongArgumentException {
+        lock.writeLock().lock();
+        try {
+            int row = keyRows.get(key);
+            if (row != PersistentIntTree.MISSING && movieStorage.compare(row, movie) > 0) {
+                movie.setID(idAllocator.allocate());
+                store(key, movie);
+                publish();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
     }
 
     /**
      * Removes all the entries with keys less than the specified key from this map.
+     * Only the head of the key index is visited, so the cost depends on the number of removed entries.
      *
      * @param key the key that serves as the lower bound for keys to be removed
      * @return the number of entries removed from the map
      */
     public int removeLowerKey(Integer key) {
-        HashMap<Integer, Movie> newMovieHashMap = new HashMap<>(movieHashMap);
-        int count = 0;
-        for (Integer i : movieHashMap.keySet()) {
-            if (i < key) {
-                newMovieHashMap.remove(i);
-                count += 1;
+        lock.writeLock().lock();
+        try {
+            int count = keyRows.headSize(element -> element < key ? -1 : 1);
+            int[] lowerKeys = new int[count];
+            PersistentIntTree.Cursor cursor = keyRows.cursor(0);
+            for (int i = 0; i < count && cursor.advance(); i++) {
+                lowerKeys[i] = cursor.element();
             }
+            for (int lowerKey : lowerKeys) {
+                delete(lowerKey);
+            }
+            publish();
+            return count;
+        } finally {
+            lock.writeLock().unlock();
         }
-        movieHashMap = newMovieHashMap;
-        return count;
     }
 
     /**
-     * Returns a list of the values contained in this map, sorted in ascending
-     * order based on their natural ordering.
+     * Returns the movies that have the specified genre and the specified MPAA rating, ordered by ID.
+     * The movies are looked up in the current snapshot, so no lock is taken.
      *
-     * @return a list of the values contained in this map, sorted in ascending order
+     * @param genre the genre of the movies to return, or null for any genre
+     * @param mpaaRating the MPAA rating of the movies to return, or null for any rating
+     * @return a list of the matching movies, ordered by ID
+     * @see MovieCollectionSnapshot#filter(MovieGenre, MpaaRating)
      */
-    public List<Movie> printAscending() {
-        List<Movie> movieList = new ArrayList<>(movieHashMap.values());
-        Collections.sort(movieList);
-        return movieList;
+    public List<Movie> filter(MovieGenre genre, MpaaRating mpaaRating) {
+        return snapshot.filter(genre, mpaaRating);
     }
 
     /**
-     * Returns a list of the values contained in this map, sorted in descending
-     * order based on their natural ordering.
+     * Returns the movies whose names start with the specified prefix, ignoring case, in ascending natural order.
      *
-     * @return a list of the values contained in this map, sorted in descending order
+     * @param prefix the beginning of the names to look for
+     * @return a list of the matching movies
      */
-    public List<Movie> printDescending() {
-        List<Movie> movieList = new ArrayList<>(movieHashMap.values());
-        Collections.sort(movieList);
-        Collections.reverse(movieList);
-        return movieList;
+    public List<Movie> findByNamePrefix(String prefix) {
+        return snapshot.getByNamePrefix(prefix);
     }
 
     /**
-     * Returns a list of the values contained in this map, sorted in descending
-     * order based on the number of Oscars won.
+     * Returns the movies whose names contain the specified substring, ignoring case, in ascending natural order.
+     * The movies are looked up in the current snapshot, so no lock is taken.
      *
-     * @return a list of the values contained in this map, sorted in descending
-     * order based on the number of Oscars won
+     * @param substring the part of the names to look for
+     * @return a list of the matching movies
+     * @see MovieCollectionSnapshot#getByNameSubstring(String)
      */
-    public List<Movie> printFieldDescendingOscarsCount() {
-        List<Movie> movieList = new ArrayList<>(movieHashMap.values());
-        movieList.sort(new Comparator<>() {
-            public int compare(Movie o1, Movie o2) {
-                return (int) (o2.getOscarsCount() - o1.getOscarsCount());
-            }
+    public List<Movie> findByNameSubstring(String substring) {
+        return snapshot.getByNameSubstring(substring);
+    }
+
+    /**
+     * Returns the movies whose coordinates lie inside the box with the specified corners, borders included,
+     * ordered by ID. The corners may be given in any order. The movies are looked up in the current snapshot,
+     * so no lock is taken.
+     *
+     * @param x1 the x coordinate of one corner of the box
+     * @param y1 the y coordinate of one corner of the box
+     * @param x2 the x coordinate of the opposite corner of the box
+     * @param y2 the y coordinate of the opposite corner of the box
+     * @return a list of the movies in the box, ordered by ID
+     */
+    public List<Movie> findInBox(int x1, int y1, int x2, int y2) {
+        return snapshot.getInBox(x1, y1, x2, y2);
+    }
+
+    /**
+     * Returns the k movies whose coordinates are closest to the specified point, nearest first.
+     * Movies at the same distance are ordered by ID. The movies are looked up in the current snapshot,
+     * so no lock is taken.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param k the maximum number of movies to return
+     * @return a list of at most k movies, nearest first
+     */
+    public List<Movie> findNearest(int x, int y, int k) {
+        return snapshot.getNearest(x, y, k);
+    }
+
+    /**
+     * Stores the movie under the specified key and updates the indexes. The write lock must be held.
+     *
+     * @param key the key to associate with the movie
+     * @param movie the movie to store
+     * @throws WrongArgumentException if the passport ID of the director belongs to another director
+     */
+    private void store(int key, Movie movie) throws WrongArgumentException {
+        int previous = keyRows.get(key);
+        boolean replacing = previous != PersistentIntTree.MISSING;
+        checkPassportID(movie.getDirector(), replacing ? movieStorage.get(previous, generation) : null);
+        reclaimRows();
+        int row = movieStorage.add(key, movie);
+        if (replacing)
+            unindex(previous);
+        keyRows = keyRows.with(key, row);
+        index(row, movie.getDirector());
+    }
+
+    /**
+     * Removes the movie stored under the specified key and updates the indexes. The write lock must be held.
+     *
+     * @param key the key of the movie to remove
+     * @return true if a movie was removed, false if the key is not present in the collection
+     */
+    private boolean delete(int key) {
+        int row = keyRows.get(key);
+        if (row == PersistentIntTree.MISSING)
+            return false;
+        keyRows = keyRows.without(key);
+        unindex(row);
+        return true;
+    }
+
+    /**
+     * Checks that the passport ID of the director is not held by a different director. A holder that only
+     * directs the movie about to be replaced does not count, since it is released by the replacement.
+     *
+     * @param director the director of the movie to store
+     * @param previous the movie that will be replaced, or null
+     * @throws WrongArgumentException if the passport ID belongs to another director
+     */
+    private void checkPassportID(Person director, Movie previous) throws WrongArgumentException {
+        if (director.getPassportID() == null)
+            return;
+        Person holder = passportIDIndex.get(director.getPassportID());
+        if (holder == null || holder.equals(director))
+            return;
+        if (previous != null && previous.getDirector().equals(holder) && directorDictionary.getReferences(holder) == 1)
+            return;
+        throw new WrongArgumentException("passport ID must be unique");
+    }
+
+    /**
+     * Publishes the current versions of the indexes as the snapshot of the collection. If rows were retired
+     * since the last snapshot, a new generation is started, so that the rows are reclaimed once the readers
+     * of the previous one are gone. The write lock must be held.
+     */
+    private void publish() {
+        if (retiring != null) {
+            retiredRows.addLast(retiring);
+            retiring = null;
+            generation.next = new Generation();
+            generation = generation.next;
+        }
+        int size = keyRows.size();
+        MovieStatistics statistics = new MovieStatistics(size, genreCounts.clone(), mpaaRatingCounts.clone(),
+                oscarsCountTotal, size == 0 ? 0 : movieStorage.getOscarsCount(oscarsCountRows.element(size - 1)),
+                size == 0 ? 0 : movieStorage.getOscarsCount(oscarsCountRows.element(0)));
+        snapshot = new MovieCollectionSnapshot(movieStorage, keyRows, sortedRows, oscarsCountRows, idRows,
+                genreIndex.clone(), mpaaRatingIndex.clone(), coordinatesIndex, nameIndex, generation, creationDate,
+                statistics);
+    }
+
+    /**
+     * Replaces the storage with an empty one of the storage mode and creates empty trees ordered by its rows.
+     * Snapshots of the previous storage keep reading it until they are gone.
+     */
+    private void createStorage() {
+        MovieStorage storage = storageMode.createStorage();
+        movieStorage = storage;
+        keyRows = new PersistentIntTree(Integer::compare);
+        sortedRows = new PersistentIntTree((row, otherRow) -> {
+            int result = storage.compare(row, otherRow);
+            if (result == 0)
+                result = Integer.compare(storage.getID(row), storage.getID(otherRow));
+            return result != 0 ? result : Integer.compare(row, otherRow);
         });
-        return movieList;
+        oscarsCountRows = new PersistentIntTree((row, otherRow) -> {
+            int result = Long.compare(storage.getOscarsCount(otherRow), storage.getOscarsCount(row));
+            if (result == 0)
+                result = Integer.compare(storage.getID(row), storage.getID(otherRow));
+            return result != 0 ? result : Integer.compare(row, otherRow);
+        });
+        retiredRows.clear();
+        retiring = null;
+    }
+
+    /**
+     * Marks the row as no longer used by the current version of the collection. The row is freed
+     * by {@link #reclaimRows()} once the current generation is unreachable.
+     *
+     * @param row the row to retire
+     */
+    private void retire(int row) {
+        if (retiring == null)
+            retiring = new RetiredRows(generation);
+        retiring.add(row);
+    }
+
+    /**
+     * Frees the retired rows whose generations have been garbage collected. A generation holds the next one,
+     * so generations become unreachable oldest first and the scan stops at the first one still alive.
+     */
+    private void reclaimRows() {
+        while (!retiredRows.isEmpty() && retiredRows.peekFirst().get() == null) {
+            RetiredRows rows = retiredRows.pollFirst();
+            for (int i = 0; i < rows.size; i++) {
+                movieStorage.release(rows.rows[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds the movie stored in the specified row to the secondary indexes. The indexed fields are read
+     * from the row, so a storage answers them from its own layout.
+     *
+     * @param row the row the movie is stored in
+     * @param director the director of the movie
+     */
+    private void index(int row, Person director) {
+        int id = movieStorage.getID(row);
+        MovieGenre genre = movieStorage.getGenre(row);
+        MpaaRating mpaaRating = movieStorage.getMpaaRating(row);
+        idRows = idRows.with(id, row);
+        idAllocator.reserve(id);
+        genreIndex[genre.ordinal()] = genreIndex[genre.ordinal()].with(row);
+        mpaaRatingIndex[mpaaRating.ordinal()] = mpaaRatingIndex[mpaaRating.ordinal()].with(row);
+        coordinatesIndex = coordinatesIndex.with(movieStorage.getX(row), movieStorage.getY(row), id);
+        genreCounts[genre.ordinal()] += 1;
+        mpaaRatingCounts[mpaaRating.ordinal()] += 1;
+        oscarsCountTotal += movieStorage.getOscarsCount(row);
+        nameIndex = nameIndex.with(movieStorage.getSortKey(row), row);
+        sortedRows = sortedRows.with(row);
+        oscarsCountRows = oscarsCountRows.with(row);
+        if (directorDictionary.acquire(director) && director.getPassportID() != null)
+            passportIDIndex.put(director.getPassportID(), director);
+    }
+
+    /**
+     * Removes the movie stored in the specified row from the secondary indexes and retires the row.
+     * Only the director is read as an object.
+     *
+     * @param row the row of the movie to remove from the indexes
+     */
+    private void unindex(int row) {
+        int id = movieStorage.getID(row);
+        MovieGenre genre = movieStorage.getGenre(row);
+        MpaaRating mpaaRating = movieStorage.getMpaaRating(row);
+        idRows = idRows.without(id);
+        genreIndex[genre.ordinal()] = genreIndex[genre.ordinal()].without(row);
+        mpaaRatingIndex[mpaaRating.ordinal()] = mpaaRatingIndex[mpaaRating.ordinal()].without(row);
+        coordinatesIndex = coordinatesIndex.without(movieStorage.getX(row), movieStorage.getY(row), id);
+        genreCounts[genre.ordinal()] -= 1;
+        mpaaRatingCounts[mpaaRating.ordinal()] -= 1;
+        oscarsCountTotal -= movieStorage.getOscarsCount(row);
+        nameIndex = nameIndex.without(movieStorage.getSortKey(row), row);
+        sortedRows = sortedRows.without(row);
+        oscarsCountRows = oscarsCountRows.without(row);
+        Person director = movieStorage.get(row, generation).getDirector();
+        if (directorDictionary.release(director) && director.getPassportID() != null)
+            passportIDIndex.remove(director.getPassportID());
+        retire(row);
+    }
+
+    /**
+     * The rows retired while one generation was current. The rows may be freed once the generation is cleared.
+     */
+    private static final class RetiredRows extends WeakReference<Generation> {
+        private int[] rows = new int[4];
+        private int size;
+
+        private RetiredRows(Generation generation) {
+            super(generation);
+        }
+
+        private void add(int row) {
+            if (size == rows.length)
+                rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
     }
 }
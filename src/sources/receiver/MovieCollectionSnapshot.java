@@ -0,0 +1,355 @@
+package sources.receiver;
+
+import sources.models.Movie;
+import sources.models.MovieGenre;
+import sources.models.MpaaRating;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+
+/**
+ * The MovieCollectionSnapshot class is an immutable version of a MovieCollection. It consists of the
+ * persistent indexes of the collection as they were after one modification, so taking a snapshot costs
+ * nothing and reading it needs no locking, while the collection goes on changing.
+ * <p>
+ * The indexes hold rows of the storage of the collection rather than movies, and movies are read from the
+ * storage when they are visited. The snapshot holds its generation, so none of its rows is reused while the
+ * snapshot is reachable. Besides the orders by key, by natural order and by Oscars count, the snapshot holds
+ * the ID map, the genre and MPAA rating bitmaps, the trigram index of the names and the quadtree of the
+ * coordinates, so every query of the collection is answered from one snapshot.
+ */
+public final class MovieCollectionSnapshot {
+    /**
+     * Natural order of movies with the ID as a tie-breaker, so that equal movies have a stable order.
+     */
+    private static final Comparator<Movie> NATURAL_ORDER = Comparator.<Movie>naturalOrder()
+            .thenComparing(Movie::getID);
+
+    private final MovieStorage movieStorage;
+    private final PersistentIntTree keyRows;
+    private final PersistentIntTree sortedRows;
+    private final PersistentIntTree oscarsCountRows;
+    private final PersistentIntTree idRows;
+    private final PersistentBitmap[] genreRows;
+    private final PersistentBitmap[] mpaaRatingRows;
+    private final PointQuadtree coordinatesIndex;
+    private final TrigramIndex nameIndex;
+    private final Generation generation;
+    private final ZonedDateTime creationDate;
+    private final MovieStatistics statistics;
+
+    MovieCollectionSnapshot(MovieStorage movieStorage, PersistentIntTree keyRows, PersistentIntTree sortedRows,
+                            PersistentIntTree oscarsCountRows, PersistentIntTree idRows,
+                            PersistentBitmap[] genreRows, PersistentBitmap[] mpaaRatingRows,
+                            PointQuadtree coordinatesIndex, TrigramIndex nameIndex, Generation generation,
+                            ZonedDateTime creationDate, MovieStatistics statistics) {
+        this.movieStorage = movieStorage;
+        this.keyRows = keyRows;
+        this.sortedRows = sortedRows;
+        this.oscarsCountRows = oscarsCountRows;
+        this.idRows = idRows;
+        this.genreRows = genreRows;
+        this.mpaaRatingRows = mpaaRatingRows;
+        this.coordinatesIndex = coordinatesIndex;
+        this.nameIndex = nameIndex;
+        this.generation = generation;
+        this.creationDate = creationDate;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns a cursor over the keys and movies of the snapshot in key order, starting at the specified position.
+     * The start is found in O(log n), so skipped movies are not visited.
+     *
+     * @param offset the number of movies with the lowest keys to skip
+     * @return a cursor positioned before the movie at the position
+     */
+    public MovieCursor cursor(int offset) {
+        PersistentIntTree.Cursor cursor = keyRows.cursor(offset);
+        return new MovieCursor() {
+            @Override
+            public boolean advance() {
+                return cursor.advance();
+            }
+
+            @Override
+            public int key() {
+                return cursor.element();
+            }
+
+            @Override
+            public Movie value() {
+                return movieStorage.get(cursor.value(), generation);
+            }
+        };
+    }
+
+    /**
+     * Returns true if the snapshot contains a movie with the specified key.
+     *
+     * @param key the key to look up
+     * @return true if the key is in use, false otherwise
+     */
+    public boolean containsKey(int key) {
+        return keyRows.get(key) != PersistentIntTree.MISSING;
+    }
+
+    /**
+     * Returns the movie associated with the specified key, or null if the key is not present in the snapshot.
+     *
+     * @param key the key of the movie to retrieve
+     * @return the movie associated with the key, or null if the key is not present in the snapshot
+     */
+    public Movie get(int key) {
+        int row = keyRows.get(key);
+        return row == PersistentIntTree.MISSING ? null : movieStorage.get(row, generation);
+    }
+
+    /**
+     * Returns the movie with the specified ID, or null if no movie with the ID is present in the snapshot.
+     *
+     * @param id the ID of the movie to retrieve
+     * @return the movie with the specified ID, or null if no movie with the ID is present in the snapshot
+     */
+    public Movie getByID(int id) {
+        int row = idRows.get(id);
+        return row == PersistentIntTree.MISSING ? null : movieStorage.get(row, generation);
+    }
+
+    /**
+     * Returns the key of the movie with the specified ID, or null if no movie with the ID is present in the snapshot.
+     *
+     * @param id the ID of the movie to look up
+     * @return the key of the movie with the specified ID, or null if no movie with the ID is present in the snapshot
+     */
+    public Integer getKeyByID(int id) {
+        int row = idRows.get(id);
+        return row == PersistentIntTree.MISSING ? null : movieStorage.getKey(row);
+    }
+
+    /**
+     * Returns the movies of the snapshot that have the specified genre and the specified MPAA rating, ordered by ID.
+     * A null criterion matches any value. Without criteria the ID map is walked in order; otherwise the rows are
+     * read from the bitmap of the criterion, or from the intersection of both bitmaps, and ordered by the IDs
+     * stored in them, packed together with the rows into longs.
+     *
+     * @param genre the genre of the movies to return, or null for any genre
+     * @param mpaaRating the MPAA rating of the movies to return, or null for any rating
+     * @return a list of the matching movies, ordered by ID
+     */
+    public List<Movie> filter(MovieGenre genre, MpaaRating mpaaRating) {
+        if (genre == null && mpaaRating == null) {
+            List<Movie> movieList = new ArrayList<>(idRows.size());
+            PersistentIntTree.Cursor cursor = idRows.cursor(0);
+            while (cursor.advance()) {
+                movieList.add(movieStorage.get(cursor.value(), generation));
+            }
+            return movieList;
+        }
+        int[] rows;
+        if (mpaaRating == null) {
+            rows = genreRows[genre.ordinal()].toArray();
+        } else if (genre == null) {
+            rows = mpaaRatingRows[mpaaRating.ordinal()].toArray();
+        } else {
+            rows = genreRows[genre.ordinal()].and(mpaaRatingRows[mpaaRating.ordinal()]);
+        }
+        long[] idRowPairs = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            idRowPairs[i] = (long) movieStorage.getID(rows[i]) << 32 | rows[i];
+        }
+        Arrays.sort(idRowPairs);
+        List<Movie> movieList = new ArrayList<>(idRowPairs.length);
+        for (long idRowPair : idRowPairs) {
+            movieList.add(movieStorage.get((int) idRowPair, generation));
+        }
+        return movieList;
+    }
+
+    /**
+     * Returns the movies of the snapshot whose names contain the specified substring, ignoring case, in ascending
+     * natural order. Substrings of at least three characters are looked up in the trigram index and only the
+     * candidates it returns are checked; shorter ones are checked against every movie.
+     *
+     * @param substring the part of the names to look for
+     * @return a list of the matching movies
+     */
+    public List<Movie> getByNameSubstring(String substring) {
+        String query = Movie.toSortKey(substring);
+        List<Movie> movieList = new ArrayList<>();
+        if (query.length() < TrigramIndex.GRAM_LENGTH) {
+            PersistentIntTree.Cursor cursor = sortedRows.cursor(0);
+            while (cursor.advance()) {
+                if (movieStorage.getSortKey(cursor.element()).contains(query))
+                    movieList.add(movieStorage.get(cursor.element(), generation));
+            }
+            return movieList;
+        }
+        for (int row : nameIndex.getCandidates(query)) {
+            if (movieStorage.getSortKey(row).contains(query))
+                movieList.add(movieStorage.get(row, generation));
+        }
+        movieList.sort(NATURAL_ORDER);
+        return movieList;
+    }
+
+    /**
+     * Returns the movies of the snapshot whose coordinates lie inside the box with the specified corners,
+     * borders included, ordered by ID. The corners may be given in any order.
+     *
+     * @param x1 the x coordinate of one corner of the box
+     * @param y1 the y coordinate of one corner of the box
+     * @param x2 the x coordinate of the opposite corner of the box
+     * @param y2 the y coordinate of the opposite corner of the box
+     * @return a list of the movies in the box, ordered by ID
+     */
+    public List<Movie> getInBox(int x1, int y1, int x2, int y2) {
+        return getByIDs(coordinatesIndex.findInBox(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2)));
+    }
+
+    /**
+     * Returns the k movies of the snapshot whose coordinates are closest to the specified point, nearest first.
+     * Movies at the same distance are ordered by ID.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param k the maximum number of movies to return
+     * @return a list of at most k movies, nearest first
+     */
+    public List<Movie> getNearest(int x, int y, int k) {
+        return getByIDs(coordinatesIndex.findNearest(x, y, k));
+    }
+
+    /**
+     * Returns the movies of the snapshot sorted in ascending order based on their natural ordering.
+     *
+     * @return a read-only collection of the movies in ascending order
+     */
+    public Collection<Movie> getAscending() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Movie> iterator() {
+                return movies(sortedRows.cursor(0));
+            }
+
+            @Override
+            public int size() {
+                return sortedRows.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the movies of the snapshot sorted in descending order based on their natural ordering.
+     *
+     * @return a read-only collection of the movies in descending order
+     */
+    public Collection<Movie> getDescending() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Movie> iterator() {
+                return movies(sortedRows.descendingCursor());
+            }
+
+            @Override
+            public int size() {
+                return sortedRows.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the movies of the snapshot whose names start with the specified prefix, ignoring case, in ascending
+     * natural order. Movies are ordered by the sort keys of their names first, so the matches form one run of
+     * the sorted index; its start is found in O(log n) by the stored sort keys and only the matches are visited.
+     *
+     * @param prefix the beginning of the names to look for
+     * @return a list of the matching movies
+     */
+    public List<Movie> getByNamePrefix(String prefix) {
+        String prefixKey = Movie.toSortKey(prefix);
+        List<Movie> movieList = new ArrayList<>();
+        int start = sortedRows.headSize(row -> movieStorage.compareSortKey(row, prefixKey) < 0 ? -1 : 1);
+        PersistentIntTree.Cursor cursor = sortedRows.cursor(start);
+        while (cursor.advance() && movieStorage.sortKeyStartsWith(cursor.element(), prefixKey)) {
+            movieList.add(movieStorage.get(cursor.element(), generation));
+        }
+        return movieList;
+    }
+
+    /**
+     * Returns a page of the movies of the snapshot sorted in descending order based on the number of Oscars won.
+     * The start of the page is found by position, so skipped movies are not visited.
+     *
+     * @param limit the maximum number of movies to return
+     * @param offset the number of movies with the most Oscars to skip
+     * @return a list of at most limit movies, sorted in descending order based on the number of Oscars won
+     */
+    public List<Movie> getOscarsCountPage(int limit, int offset) {
+        List<Movie> movieList = new ArrayList<>(Math.min(limit, Math.max(size() - offset, 0)));
+        PersistentIntTree.Cursor cursor = oscarsCountRows.cursor(offset);
+        while (movieList.size() < limit && cursor.advance()) {
+            movieList.add(movieStorage.get(cursor.element(), generation));
+        }
+        return movieList;
+    }
+
+    /**
+     * Returns the number of movies in the snapshot.
+     *
+     * @return the number of movies in the snapshot
+     */
+    public int size() {
+        return keyRows.size();
+    }
+
+    /**
+     * Returns the aggregates of the movies of the snapshot.
+     *
+     * @return the statistics of the snapshot
+     */
+    public MovieStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the creation date of the collection at the time of the snapshot.
+     *
+     * @return the creation date of the collection
+     */
+    public ZonedDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    private List<Movie> getByIDs(int[] ids) {
+        List<Movie> movieList = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            movieList.add(movieStorage.get(idRows.get(id), generation));
+        }
+        return movieList;
+    }
+
+    private Iterator<Movie> movies(PersistentIntTree.Cursor cursor) {
+        return new Iterator<>() {
+            private boolean advanced;
+            private boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!advanced) {
+                    hasNext = cursor.advance();
+                    advanced = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Movie next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                advanced = false;
+                return movieStorage.get(cursor.element(), generation);
+            }
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package sources.receiver;
+
+import sources.models.Movie;
+
+/**
+ * The MovieCursor interface represents a forward-only cursor over the movies of a snapshot in key order.
+ * Keys are exposed as primitive ints, so walking the collection allocates no entries.
+ */
+public interface MovieCursor {
+    /**
+     * Moves the cursor to the next entry.
+     *
+     * @return true if the cursor points to an entry, false if there are no more entries
+     */
+    boolean advance();
+
+    /**
+     * Returns the key of the current entry.
+     *
+     * @return the key of the current entry
+     */
+    int key();
+
+    /**
+     * Returns the movie of the current entry.
+     *
+     * @return the movie of the current entry
+     */
+    Movie value();
+}
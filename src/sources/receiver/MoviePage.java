@@ -0,0 +1,72 @@
+package sources.receiver;
+
+import sources.models.Movie;
+
+/**
+ * The MoviePage class is one page of movies listed by key, together with whether more movies follow it.
+ * The page is a range of positions in a snapshot, so it copies no movies and stays valid while the
+ * collection changes.
+ */
+public final class MoviePage {
+    private final MovieCollectionSnapshot snapshot;
+    private final int offset;
+    private final int size;
+
+    /**
+     * Constructs a page of movies.
+     *
+     * @param snapshot the snapshot the page is taken from
+     * @param offset the number of movies with the lowest keys before the page
+     * @param limit the maximum number of movies on the page
+     */
+    MoviePage(MovieCollectionSnapshot snapshot, int offset, int limit) {
+        this.snapshot = snapshot;
+        this.offset = Math.min(offset, snapshot.size());
+        this.size = Math.min(limit, snapshot.size() - this.offset);
+    }
+
+    /**
+     * Returns a cursor over the movies on the page in key order.
+     *
+     * @return a new cursor over the page
+     */
+    public MovieCursor cursor() {
+        MovieCursor cursor = snapshot.cursor(offset);
+        return new MovieCursor() {
+            private int remaining = size;
+
+            @Override
+            public boolean advance() {
+                return remaining-- > 0 && cursor.advance();
+            }
+
+            @Override
+            public int key() {
+                return cursor.key();
+            }
+
+            @Override
+            public Movie value() {
+                return cursor.value();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of movies on the page.
+     *
+     * @return the number of movies on the page
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if more movies follow the page.
+     *
+     * @return true if there is a next page, false otherwise
+     */
+    public boolean hasMore() {
+        return offset + size < snapshot.size();
+    }
+}
@@ -0,0 +1,93 @@
+package sources.receiver;
+
+import sources.models.MovieGenre;
+import sources.models.MpaaRating;
+
+/**
+ * The MovieStatistics class holds the aggregates of one version of a MovieCollection. The collection updates
+ * its counters on every mutation and copies them into a new MovieStatistics when it publishes a snapshot,
+ * so reading the statistics never depends on the size of the collection.
+ */
+public final class MovieStatistics {
+    private final int size;
+    private final int[] genreCounts;
+    private final int[] mpaaRatingCounts;
+    private final long oscarsCountTotal;
+    private final long oscarsCountMin;
+    private final long oscarsCountMax;
+
+    MovieStatistics(int size, int[] genreCounts, int[] mpaaRatingCounts, long oscarsCountTotal,
+                    long oscarsCountMin, long oscarsCountMax) {
+        this.size = size;
+        this.genreCounts = genreCounts;
+        this.mpaaRatingCounts = mpaaRatingCounts;
+        this.oscarsCountTotal = oscarsCountTotal;
+        this.oscarsCountMin = oscarsCountMin;
+        this.oscarsCountMax = oscarsCountMax;
+    }
+
+    /**
+     * Returns the number of movies.
+     *
+     * @return the number of movies
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of movies of the specified genre.
+     *
+     * @param genre the genre to count
+     * @return the number of movies of the genre
+     */
+    public int getCount(MovieGenre genre) {
+        return genreCounts[genre.ordinal()];
+    }
+
+    /**
+     * Returns the number of movies with the specified MPAA rating.
+     *
+     * @param mpaaRating the MPAA rating to count
+     * @return the number of movies with the rating
+     */
+    public int getCount(MpaaRating mpaaRating) {
+        return mpaaRatingCounts[mpaaRating.ordinal()];
+    }
+
+    /**
+     * Returns the total number of Oscars won by the movies.
+     *
+     * @return the sum of oscarsCount over all movies
+     */
+    public long getOscarsCountTotal() {
+        return oscarsCountTotal;
+    }
+
+    /**
+     * Returns the lowest number of Oscars won by a movie, or 0 if there are no movies.
+     *
+     * @return the minimum oscarsCount
+     */
+    public long getOscarsCountMin() {
+        return oscarsCountMin;
+    }
+
+    /**
+     * Returns the highest number of Oscars won by a movie, or 0 if there are no movies.
+     *
+     * @return the maximum oscarsCount
+     */
+    public long getOscarsCountMax() {
+        return oscarsCountMax;
+    }
+
+    /**
+     * Returns the mean number of Oscars won by a movie, or 0 if there are no movies.
+     *
+     * @return the mean oscarsCount
+     */
+    public double getOscarsCountMean() {
+        return size == 0 ? 0 : (double) oscarsCountTotal / size;
+    }
+}
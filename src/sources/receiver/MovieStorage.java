@@ -0,0 +1,152 @@
+package sources.receiver;
+
+import sources.models.Movie;
+import sources.models.MovieGenre;
+import sources.models.MpaaRating;
+
+/**
+ * The MovieStorage interface represents the primary store behind a MovieCollection. Every stored movie occupies
+ * a row, a small non-negative int that the indexes of the collection refer to; implementations may keep the
+ * movies as objects or in another layout and hand out Movie instances on demand.
+ * <p>
+ * A row keeps its contents until it is released, and the collection releases a row only when no snapshot
+ * or view can read it any more. Rows that are stored may therefore be read by any thread without locking,
+ * while rows are added and released under the lock of the collection.
+ */
+interface MovieStorage {
+    /**
+     * Stores the movie under the specified key in a free row.
+     *
+     * @param key the key of the movie
+     * @param movie the movie to store, must not be null
+     * @return the row of the stored movie
+     */
+    int add(int key, Movie movie);
+
+    /**
+     * Frees the specified row, so that it can be reused by later additions.
+     *
+     * @param row the row to free
+     */
+    void release(int row);
+
+    /**
+     * Returns the movie stored in the specified row. A movie that is read from the row on demand
+     * holds the generation, so that the row is not reused while the movie is reachable.
+     *
+     * @param row the row of the movie
+     * @param generation the generation the row is read in
+     * @return the movie stored in the row
+     */
+    Movie get(int row, Generation generation);
+
+    /**
+     * Returns the key of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the key of the movie
+     */
+    int getKey(int row);
+
+    /**
+     * Returns the ID of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the ID of the movie
+     */
+    int getID(int row);
+
+    /**
+     * Returns the number of Oscars of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the number of Oscars of the movie
+     */
+    long getOscarsCount(int row);
+
+    /**
+     * Returns the genre of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the genre of the movie
+     */
+    MovieGenre getGenre(int row);
+
+    /**
+     * Returns the MPAA rating of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the MPAA rating of the movie
+     */
+    MpaaRating getMpaaRating(int row);
+
+    /**
+     * Returns the x coordinate of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the x coordinate of the movie
+     */
+    int getX(int row);
+
+    /**
+     * Returns the y coordinate of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the y coordinate of the movie
+     */
+    int getY(int row);
+
+    /**
+     * Returns the sort key of the name of the movie stored in the specified row.
+     *
+     * @param row the row of the movie
+     * @return the sort key of the movie name
+     */
+    String getSortKey(int row);
+
+    /**
+     * Compares the sort key of the name of the movie stored in the specified row with the specified sort key.
+     *
+     * @param row the row of the movie
+     * @param sortKey the sort key to compare with
+     * @return a negative number, zero or a positive number as the stored sort key is less than, equal to
+     * or greater than the specified one
+     */
+    int compareSortKey(int row, String sortKey);
+
+    /**
+     * Returns true if the sort key of the name of the movie stored in the specified row starts with the prefix.
+     *
+     * @param row the row of the movie
+     * @param prefix the sort key of the beginning of the name
+     * @return true if the stored sort key starts with the prefix, false otherwise
+     */
+    boolean sortKeyStartsWith(int row, String prefix);
+
+    /**
+     * Compares the movies stored in the specified rows in their natural order.
+     *
+     * @param row the row of the first movie
+     * @param otherRow the row of the second movie
+     * @return a negative number, zero or a positive number as the first movie is less than, equal to or greater
+     * than the second
+     */
+    int compare(int row, int otherRow);
+
+    /**
+     * Compares the movie stored in the specified row with the specified movie in their natural order.
+     *
+     * @param row the row of the first movie
+     * @param movie the second movie
+     * @return a negative number, zero or a positive number as the stored movie is less than, equal to or greater
+     * than the specified movie
+     */
+    int compare(int row, Movie movie);
+
+    /**
+     * Prepares the storage to add the specified number of movies without further resizing.
+     *
+     * @param additionalSize the expected number of movies to add
+     */
+    void ensureCapacity(int additionalSize);
+}
@@ -0,0 +1,113 @@
+package sources.receiver;
+
+import sources.models.*;
+
+import java.time.ZonedDateTime;
+
+/**
+ * The MovieView class is the base of the read-only Movie instances handed out by storages that do not keep
+ * movies as objects. Subclasses read the fields from a row of their storage on demand; all setters are rejected.
+ * A view holds the generation it was read in, so its row is not reused while the view is reachable, and
+ * the view may be kept and read by any thread.
+ */
+abstract class MovieView extends Movie {
+    private static final String READ_ONLY = "movies handed out by this storage are read-only";
+
+    private final Generation generation;
+    private String sortKey;
+
+    /**
+     * Constructs a view read in the specified generation.
+     *
+     * @param generation the generation that keeps the row of the view from being reused
+     */
+    MovieView(Generation generation) {
+        this.generation = generation;
+    }
+
+    @Override
+    public abstract Integer getID();
+
+    @Override
+    public abstract String getName();
+
+    /**
+     * Returns the sort key stored next to the name. It is read from the storage once and kept in the view.
+     *
+     * @return the sort key of the movie name
+     */
+    @Override
+    public String getSortKey() {
+        String key = sortKey;
+        if (key == null) {
+            key = readSortKey();
+            sortKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Reads the sort key of the movie name from the storage.
+     *
+     * @return the stored sort key of the movie name
+     */
+    abstract String readSortKey();
+
+    @Override
+    public abstract Coordinates getCoordinates();
+
+    @Override
+    public abstract ZonedDateTime getCreationDate();
+
+    @Override
+    public abstract long getOscarsCount();
+
+    @Override
+    public abstract MovieGenre getGenre();
+
+    @Override
+    public abstract MpaaRating getMpaaRating();
+
+    @Override
+    public abstract Person getDirector();
+
+    @Override
+    public void setID(Integer id) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    @Override
+    public void setName(String name) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    @Override
+    public void setCoordinates(Coordinates coordinates) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    @Override
+    public void setCreationDate(ZonedDateTime creationDate) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    @Override
+    public void setOscarsCount(long oscarsCount) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    @Override
+    public void setGenre(MovieGenre genre) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    @Override
+    public void setMpaaRating(MpaaRating mpaaRating) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+
+    @Override
+    public void setDirector(Person director) {
+        throw new UnsupportedOperationException(READ_ONLY);
+    }
+}
@@ -0,0 +1,477 @@
+package sources.receiver;
+
+import sources.exceptions.io.WrongArgumentException;
+import sources.models.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+/**
+ * The OffHeapMovieStorage class keeps movies outside the Java heap. Every movie is encoded into a fixed-layout
+ * record in direct ByteBuffers, and its strings go to slabs of direct memory. The sort key of the name is stored
+ * too, sharing the block of the name if they are equal, and movies are compared by reading the characters of
+ * their sort keys in place. A string takes a block of a size
+ * class, and the block of a released string is put on the free list of its class, from which later strings of
+ * the same class take their blocks; the free lists are threaded through the free blocks themselves. On the heap
+ * only the tables of chunks, the stack of free records, the free list heads and a dictionary of time zones remain.
+ * <p>
+ * Movies are handed out as read-only views that decode their fields from native memory on demand. Stored records
+ * and strings are never moved, and the tables of chunks are replaced, not resized in place, and published through
+ * volatile fields, so views and snapshots may read them from any thread.
+ */
+class OffHeapMovieStorage implements MovieStorage {
+    private static final int RECORD_CHUNK_BITS = 14;
+    private static final int RECORDS_PER_CHUNK = 1 << RECORD_CHUNK_BITS;
+    private static final int STRING_CHUNK_SIZE = 1 << 20;
+    private static final long NO_STRING = -1L;
+    private static final int LATIN1 = 0;
+    private static final int UTF16 = 1;
+    private static final int BLOCK_UNIT = 8;
+    private static final int SMALL_BLOCK_LIMIT = 256;
+    private static final int SMALL_CLASS_COUNT = SMALL_BLOCK_LIMIT / BLOCK_UNIT;
+    private static final int SMALL_BLOCK_BITS = 8;
+    private static final int CLASS_COUNT = SMALL_CLASS_COUNT + 20 - SMALL_BLOCK_BITS;
+    private static final MovieGenre[] GENRES = MovieGenre.values();
+    private static final MpaaRating[] RATINGS = MpaaRating.values();
+
+    // Record layout
+    private static final int KEY = 0;
+    private static final int ID = 4;
+    private static final int X = 8;
+    private static final int Y = 12;
+    private static final int CREATION_SECONDS = 16;
+    private static final int CREATION_NANOS = 24;
+    private static final int CREATION_ZONE = 28;
+    private static final int OSCARS_COUNT = 32;
+    private static final int GENRE = 40;
+    private static final int MPAA_RATING = 41;
+    private static final int WEIGHT = 44;
+    private static final int BIRTHDAY_SECONDS = 48;
+    private static final int BIRTHDAY_NANOS = 56;
+    private static final int NAME = 64;
+    private static final int DIRECTOR_NAME = 72;
+    private static final int PASSPORT_ID = 80;
+    private static final int SORT_KEY = 88;
+    private static final int RECORD_SIZE = 96;
+
+    private final ValueDictionary<ZoneId> zones = new ValueDictionary<>();
+    private volatile ByteBuffer[] recordChunks = new ByteBuffer[0];
+    private volatile ByteBuffer[] stringChunks = new ByteBuffer[0];
+    private final long[] freeBlocks = new long[CLASS_COUNT];
+
+    private int recordCount;
+    private int[] freeRecords = new int[16];
+    private int freeRecordCount;
+    private int stringChunk = -1;
+    private int stringPosition;
+
+    /**
+     * Constructs an empty OffHeapMovieStorage.
+     */
+    OffHeapMovieStorage() {
+        Arrays.fill(freeBlocks, NO_STRING);
+    }
+
+    @Override
+    public int add(int key, Movie movie) {
+        if (movie == null)
+            throw new NullPointerException("OffHeapMovieStorage does not store null values");
+        int record = allocateRecord();
+        write(record, key, movie);
+        return record;
+    }
+
+    @Override
+    public void release(int record) {
+        ByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        long name = chunk.getLong(offset + NAME);
+        long sortKey = chunk.getLong(offset + SORT_KEY);
+        releaseString(name);
+        if (sortKey != name)
+            releaseString(sortKey);
+        releaseString(chunk.getLong(offset + DIRECTOR_NAME));
+        releaseString(chunk.getLong(offset + PASSPORT_ID));
+        zones.release(chunk.getInt(offset + CREATION_ZONE));
+        if (freeRecordCount == freeRecords.length)
+            freeRecords = Arrays.copyOf(freeRecords, freeRecords.length * 2);
+        freeRecords[freeRecordCount++] = record;
+    }
+
+    @Override
+    public Movie get(int record, Generation generation) {
+        return new RecordView(record, generation);
+    }
+
+    @Override
+    public int getKey(int record) {
+        return chunk(record).getInt(offset(record) + KEY);
+    }
+
+    @Override
+    public int getID(int record) {
+        return chunk(record).getInt(offset(record) + ID);
+    }
+
+    @Override
+    public long getOscarsCount(int record) {
+        return chunk(record).getLong(offset(record) + OSCARS_COUNT);
+    }
+
+    @Override
+    public MovieGenre getGenre(int record) {
+        return GENRES[chunk(record).get(offset(record) + GENRE)];
+    }
+
+    @Override
+    public MpaaRating getMpaaRating(int record) {
+        return RATINGS[chunk(record).get(offset(record) + MPAA_RATING)];
+    }
+
+    @Override
+    public int getX(int record) {
+        return chunk(record).getInt(offset(record) + X);
+    }
+
+    @Override
+    public int getY(int record) {
+        return chunk(record).getInt(offset(record) + Y);
+    }
+
+    @Override
+    public String getSortKey(int record) {
+        return readString(chunk(record).getLong(offset(record) + SORT_KEY));
+    }
+
+    @Override
+    public int compareSortKey(int record, String sortKey) {
+        return compareString(chunk(record).getLong(offset(record) + SORT_KEY), sortKey);
+    }
+
+    @Override
+    public boolean sortKeyStartsWith(int record, String prefix) {
+        long reference = chunk(record).getLong(offset(record) + SORT_KEY);
+        if (length(reference) < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (charAt(reference, i) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int compare(int record, int otherRecord) {
+        long sortKey = chunk(record).getLong(offset(record) + SORT_KEY);
+        long otherSortKey = chunk(otherRecord).getLong(offset(otherRecord) + SORT_KEY);
+        int result = compareStrings(sortKey, otherSortKey);
+        return result != 0 ? result : Long.compare(getOscarsCount(record), getOscarsCount(otherRecord));
+    }
+
+    @Override
+    public int compare(int record, Movie movie) {
+        String sortKey = movie.getSortKey();
+        int result = compareString(chunk(record).getLong(offset(record) + SORT_KEY), sortKey);
+        return result != 0 ? result : Long.compare(getOscarsCount(record), movie.getOscarsCount());
+    }
+
+    @Override
+    public void ensureCapacity(int additionalSize) {
+        long expectedRecords = recordCount + Math.max(additionalSize - freeRecordCount, 0);
+        while ((long) recordChunks.length * RECORDS_PER_CHUNK < expectedRecords)
+            addRecordChunk();
+    }
+
+    private void write(int record, int key, Movie movie) {
+        ByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        chunk.putInt(offset + KEY, key);
+        chunk.putInt(offset + ID, movie.getID());
+        chunk.putInt(offset + X, movie.getCoordinates().getX());
+        chunk.putInt(offset + Y, movie.getCoordinates().getY());
+        ZonedDateTime creationDate = movie.getCreationDate();
+        chunk.putLong(offset + CREATION_SECONDS, creationDate.toEpochSecond());
+        chunk.putInt(offset + CREATION_NANOS, creationDate.getNano());
+        chunk.putInt(offset + CREATION_ZONE, zones.encode(creationDate.getZone()));
+        chunk.putLong(offset + OSCARS_COUNT, movie.getOscarsCount());
+        chunk.put(offset + GENRE, (byte) movie.getGenre().ordinal());
+        chunk.put(offset + MPAA_RATING, (byte) movie.getMpaaRating().ordinal());
+        Person director = movie.getDirector();
+        chunk.putInt(offset + WEIGHT, director.getWeight());
+        chunk.putLong(offset + BIRTHDAY_SECONDS, director.getBirthday().toEpochSecond(ZoneOffset.UTC));
+        chunk.putInt(offset + BIRTHDAY_NANOS, director.getBirthday().getNano());
+        long name = writeString(movie.getName());
+        chunk.putLong(offset + NAME, name);
+        String sortKey = movie.getSortKey();
+        chunk.putLong(offset + SORT_KEY, sortKey.equals(movie.getName()) ? name : writeString(sortKey));
+        chunk.putLong(offset + DIRECTOR_NAME, writeString(director.getName()));
+        chunk.putLong(offset + PASSPORT_ID, writeString(director.getPassportID()));
+    }
+
+    private int allocateRecord() {
+        if (freeRecordCount > 0)
+            return freeRecords[--freeRecordCount];
+        if (recordCount == recordChunks.length * RECORDS_PER_CHUNK)
+            addRecordChunk();
+        return recordCount++;
+    }
+
+    private void addRecordChunk() {
+        ByteBuffer[] chunks = Arrays.copyOf(recordChunks, recordChunks.length + 1);
+        chunks[chunks.length - 1] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE);
+        recordChunks = chunks;
+    }
+
+    private ByteBuffer chunk(int record) {
+        return recordChunks[record >>> RECORD_CHUNK_BITS];
+    }
+
+    private int offset(int record) {
+        return (record & (RECORDS_PER_CHUNK - 1)) * RECORD_SIZE;
+    }
+
+    /**
+     * Stores the string in a block as a header followed by its characters. The header holds the length and
+     * whether the characters take one byte each, as in Latin-1, or two, as in UTF-16.
+     *
+     * @param value the string to store, may be null
+     * @return the reference to the stored string, made of the slab index and the offset in the slab
+     */
+    private long writeString(String value) {
+        if (value == null)
+            return NO_STRING;
+        int coder = LATIN1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                coder = UTF16;
+                break;
+            }
+        }
+        long reference = allocateBlock(Integer.BYTES + (value.length() << coder));
+        ByteBuffer slab = stringChunks[(int) (reference >>> 32)];
+        int offset = (int) reference;
+        slab.putInt(offset, value.length() << 1 | coder);
+        offset += Integer.BYTES;
+        for (int i = 0; i < value.length(); i++) {
+            if (coder == LATIN1)
+                slab.put(offset + i, (byte) value.charAt(i));
+            else
+                slab.putChar(offset + 2 * i, value.charAt(i));
+        }
+        return reference;
+    }
+
+    private String readString(long reference) {
+        if (reference == NO_STRING)
+            return null;
+        ByteBuffer slab = stringChunks[(int) (reference >>> 32)];
+        int offset = (int) reference;
+        int header = slab.getInt(offset);
+        offset += Integer.BYTES;
+        if ((header & 1) == LATIN1) {
+            byte[] bytes = new byte[header >>> 1];
+            slab.get(offset, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[header >>> 1];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = slab.getChar(offset + 2 * i);
+        return new String(chars);
+    }
+
+    private int length(long reference) {
+        return stringChunks[(int) (reference >>> 32)].getInt((int) reference) >>> 1;
+    }
+
+    private char charAt(long reference, int index) {
+        ByteBuffer slab = stringChunks[(int) (reference >>> 32)];
+        int offset = (int) reference;
+        if ((slab.getInt(offset) & 1) == LATIN1)
+            return (char) (slab.get(offset + Integer.BYTES + index) & 0xFF);
+        return slab.getChar(offset + Integer.BYTES + 2 * index);
+    }
+
+    /**
+     * Compares two stored strings character by character, like String.compareTo.
+     */
+    private int compareStrings(long reference, long otherReference) {
+        if (reference == otherReference)
+            return 0;
+        int length = length(reference);
+        int otherLength = length(otherReference);
+        for (int i = 0; i < Math.min(length, otherLength); i++) {
+            char c = charAt(reference, i);
+            char otherC = charAt(otherReference, i);
+            if (c != otherC)
+                return c - otherC;
+        }
+        return length - otherLength;
+    }
+
+    /**
+     * Compares a stored string with the value character by character, like String.compareTo.
+     */
+    private int compareString(long reference, String value) {
+        int length = length(reference);
+        for (int i = 0; i < Math.min(length, value.length()); i++) {
+            char c = charAt(reference, i);
+            if (c != value.charAt(i))
+                return c - value.charAt(i);
+        }
+        return length - value.length();
+    }
+
+    private void releaseString(long reference) {
+        if (reference == NO_STRING)
+            return;
+        ByteBuffer slab = stringChunks[(int) (reference >>> 32)];
+        int header = slab.getInt((int) reference);
+        int sizeClass = sizeClass(Integer.BYTES + ((header >>> 1) << (header & 1)));
+        if (sizeClass == CLASS_COUNT) {
+            ByteBuffer[] chunks = stringChunks.clone();
+            chunks[(int) (reference >>> 32)] = null;
+            stringChunks = chunks;
+            return;
+        }
+        slab.putLong((int) reference, freeBlocks[sizeClass]);
+        freeBlocks[sizeClass] = reference;
+    }
+
+    /**
+     * Returns a block for a string of the specified number of bytes, taken from the free list of its size class
+     * or cut from the end of the current slab. A string that does not fit into a slab gets a slab of its own.
+     */
+    private long allocateBlock(int bytes) {
+        int sizeClass = sizeClass(bytes);
+        if (sizeClass == CLASS_COUNT)
+            return addStringChunk(bytes, false);
+        long reference = freeBlocks[sizeClass];
+        if (reference != NO_STRING) {
+            freeBlocks[sizeClass] = stringChunks[(int) (reference >>> 32)].getLong((int) reference);
+            return reference;
+        }
+        int blockSize = blockSize(sizeClass);
+        if (stringChunk < 0 || stringPosition + blockSize > STRING_CHUNK_SIZE) {
+            stringChunk = (int) (addStringChunk(STRING_CHUNK_SIZE, true) >>> 32);
+            stringPosition = 0;
+        }
+        reference = (long) stringChunk << 32 | stringPosition;
+        stringPosition += blockSize;
+        return reference;
+    }
+
+    private long addStringChunk(int size, boolean shared) {
+        ByteBuffer[] chunks = stringChunks;
+        int index = chunks.length;
+        if (!shared) {
+            for (int i = 0; i < chunks.length; i++) {
+                if (chunks[i] == null) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+        if (index == chunks.length)
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+        else
+            chunks = chunks.clone();
+        chunks[index] = ByteBuffer.allocateDirect(size);
+        stringChunks = chunks;
+        return (long) index << 32;
+    }
+
+    /**
+     * Returns the size class of a block of the specified number of bytes: blocks up to 256 bytes come in steps
+     * of 8 bytes, larger ones in powers of two, and blocks larger than a slab are not pooled.
+     */
+    private static int sizeClass(int bytes) {
+        if (bytes <= SMALL_BLOCK_LIMIT)
+            return (Math.max(bytes, Long.BYTES) + BLOCK_UNIT - 1) / BLOCK_UNIT - 1;
+        if (bytes > STRING_CHUNK_SIZE)
+            return CLASS_COUNT;
+        return SMALL_CLASS_COUNT + (Integer.SIZE - Integer.numberOfLeadingZeros(bytes - 1)) - SMALL_BLOCK_BITS - 1;
+    }
+
+    private static int blockSize(int sizeClass) {
+        if (sizeClass < SMALL_CLASS_COUNT)
+            return (sizeClass + 1) * BLOCK_UNIT;
+        return 1 << (sizeClass - SMALL_CLASS_COUNT + SMALL_BLOCK_BITS + 1);
+    }
+
+    /**
+     * A read-only Movie that decodes its fields from one record in native memory.
+     */
+    private class RecordView extends MovieView {
+        private final int record;
+
+        private RecordView(int record, Generation generation) {
+            super(generation);
+            this.record = record;
+        }
+
+        @Override
+        public Integer getID() {
+            return chunk(record).getInt(offset(record) + ID);
+        }
+
+        @Override
+        public String getName() {
+            return readString(chunk(record).getLong(offset(record) + NAME));
+        }
+
+        @Override
+        String readSortKey() {
+            return readString(chunk(record).getLong(offset(record) + SORT_KEY));
+        }
+
+        @Override
+        public Coordinates getCoordinates() {
+            ByteBuffer chunk = chunk(record);
+            int offset = offset(record);
+            return new Coordinates(chunk.getInt(offset + X), chunk.getInt(offset + Y));
+        }
+
+        @Override
+        public ZonedDateTime getCreationDate() {
+            ByteBuffer chunk = chunk(record);
+            int offset = offset(record);
+            Instant instant = Instant.ofEpochSecond(chunk.getLong(offset + CREATION_SECONDS), chunk.getInt(offset + CREATION_NANOS));
+            return ZonedDateTime.ofInstant(instant, zones.decode(chunk.getInt(offset + CREATION_ZONE)));
+        }
+
+        @Override
+        public long getOscarsCount() {
+            return chunk(record).getLong(offset(record) + OSCARS_COUNT);
+        }
+
+        @Override
+        public MovieGenre getGenre() {
+            return GENRES[chunk(record).get(offset(record) + GENRE)];
+        }
+
+        @Override
+        public MpaaRating getMpaaRating() {
+            return RATINGS[chunk(record).get(offset(record) + MPAA_RATING)];
+        }
+
+        @Override
+        public Person getDirector() {
+            ByteBuffer chunk = chunk(record);
+            int offset = offset(record);
+            LocalDateTime birthday = LocalDateTime.ofEpochSecond(chunk.getLong(offset + BIRTHDAY_SECONDS),
+                    chunk.getInt(offset + BIRTHDAY_NANOS), ZoneOffset.UTC);
+            try {
+                return new Person(readString(chunk.getLong(offset + DIRECTOR_NAME)), birthday,
+                        chunk.getInt(offset + WEIGHT), readString(chunk.getLong(offset + PASSPORT_ID)));
+            } catch (WrongArgumentException e) {
+                throw new IllegalStateException("stored director is invalid: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package sources.receiver;
+
+import java.util.Arrays;
+
+/**
+ * The PersistentBitmap class is an immutable set of non-negative ints stored as a bitmap. The bitmap is cut into
+ * 32-bit words, and the words that have a bit set are kept in a {@link PersistentIntTree} by their index, so
+ * setting or clearing a bit copies one path of the tree and returns a new bitmap that shares everything else
+ * with the old one. Empty words take no space, and a version may be read by any number of threads without locking.
+ * <p>
+ * The tree stores the complement of every word, so that the MISSING value of an absent word reads as a word
+ * with no bits set.
+ */
+final class PersistentBitmap {
+    /**
+     * The bitmap with no bits set.
+     */
+    static final PersistentBitmap EMPTY = new PersistentBitmap(new PersistentIntTree(Integer::compare), 0);
+
+    private static final int WORD_BITS = 5;
+
+    private final PersistentIntTree words;
+    private final int cardinality;
+
+    private PersistentBitmap(PersistentIntTree words, int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Returns a bitmap with the bits of this bitmap and the specified bit set.
+     *
+     * @param bit the bit to set
+     * @return the new version of the bitmap, or this bitmap if the bit is set
+     */
+    PersistentBitmap with(int bit) {
+        int index = bit >>> WORD_BITS;
+        int word = ~words.get(index);
+        int newWord = word | 1 << bit;
+        if (newWord == word)
+            return this;
+        return new PersistentBitmap(words.with(index, ~newWord), cardinality + 1);
+    }
+
+    /**
+     * Returns a bitmap with the bits of this bitmap except the specified bit.
+     *
+     * @param bit the bit to clear
+     * @return the new version of the bitmap, or this bitmap if the bit is not set
+     */
+    PersistentBitmap without(int bit) {
+        int index = bit >>> WORD_BITS;
+        int word = ~words.get(index);
+        int newWord = word & ~(1 << bit);
+        if (newWord == word)
+            return this;
+        PersistentIntTree newWords = newWord == 0 ? words.without(index) : words.with(index, ~newWord);
+        return new PersistentBitmap(newWords, cardinality - 1);
+    }
+
+    /**
+     * Returns the number of bits set.
+     *
+     * @return the number of bits set
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Returns the bits set in this bitmap in ascending order.
+     *
+     * @return the bits set
+     */
+    int[] toArray() {
+        return and(this);
+    }
+
+    /**
+     * Returns the bits set both in this bitmap and in the other one in ascending order. The words of the two
+     * bitmaps are walked together and intersected word by word.
+     *
+     * @param other the bitmap to intersect with
+     * @return the bits set in both bitmaps
+     */
+    int[] and(PersistentBitmap other) {
+        int[] bits = new int[Math.min(cardinality, other.cardinality)];
+        int count = 0;
+        PersistentIntTree.Cursor cursor = words.cursor(0);
+        PersistentIntTree.Cursor otherCursor = other.words.cursor(0);
+        boolean hasWord = cursor.advance();
+        boolean hasOtherWord = otherCursor.advance();
+        while (hasWord && hasOtherWord) {
+            int index = cursor.element();
+            int otherIndex = otherCursor.element();
+            if (index < otherIndex) {
+                hasWord = cursor.advance();
+            } else if (index > otherIndex) {
+                hasOtherWord = otherCursor.advance();
+            } else {
+                int word = ~cursor.value() & ~otherCursor.value();
+                while (word != 0) {
+                    bits[count++] = index << WORD_BITS | Integer.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+                hasWord = cursor.advance();
+                hasOtherWord = otherCursor.advance();
+            }
+        }
+        return count == bits.length ? bits : Arrays.copyOf(bits, count);
+    }
+}
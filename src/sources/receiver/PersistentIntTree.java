@@ -0,0 +1,532 @@
+package sources.receiver;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The PersistentIntTree class is an immutable sorted set of int elements, each of which may carry an int value.
+ * It is a B+ tree: leaves hold up to {@value #CAPACITY} elements in sorted arrays, and inner nodes hold up to as
+ * many children together with the lowest element and the size of every child, so elements are found both by
+ * comparison and by position in O(log n). Adding or removing an element copies only the nodes on its path and
+ * returns a new tree that shares all other nodes with the old one, so a version never changes and may be read
+ * by any number of threads without locking.
+ * <p>
+ * Elements are ordered by an IntBinaryOperator rather than by their value, so that the tree can hold the rows of
+ * a MovieStorage ordered by the fields stored in them. An element costs one int, or two with its value, instead
+ * of a node object per entry.
+ */
+final class PersistentIntTree {
+    /**
+     * The value returned by lookups for elements that are not present in the tree.
+     */
+    static final int MISSING = -1;
+
+    private static final int CAPACITY = 32;
+    private static final int MIN_LENGTH = CAPACITY / 4;
+
+    private final IntBinaryOperator comparator;
+    private final Node root;
+
+    /**
+     * Constructs an empty tree ordered by the specified comparator.
+     *
+     * @param comparator the comparator that orders the elements
+     */
+    PersistentIntTree(IntBinaryOperator comparator) {
+        this(comparator, null);
+    }
+
+    private PersistentIntTree(IntBinaryOperator comparator, Node root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Returns a tree that contains the elements of this tree and the specified element with the specified value.
+     * If the element is present, its value is replaced.
+     *
+     * @param element the element to add
+     * @param value the value of the element
+     * @return the new version of the tree
+     */
+    PersistentIntTree with(int element, int value) {
+        return insert(element, value, true);
+    }
+
+    /**
+     * Returns a tree that contains the elements of this tree and the specified element without a value.
+     *
+     * @param element the element to add
+     * @return the new version of the tree, or this tree if the element is present
+     */
+    PersistentIntTree with(int element) {
+        return insert(element, 0, false);
+    }
+
+    /**
+     * Returns a tree that contains the elements of this tree except the specified element.
+     *
+     * @param element the element to remove
+     * @return the new version of the tree, or this tree if the element is not present
+     */
+    PersistentIntTree without(int element) {
+        if (root == null)
+            return this;
+        Node newRoot = remove(root, element);
+        if (newRoot == root)
+            return this;
+        while (newRoot instanceof Branch branch && branch.children.length == 1)
+            newRoot = branch.children[0];
+        return new PersistentIntTree(comparator, newRoot.length() == 0 ? null : newRoot);
+    }
+
+    /**
+     * Returns the value of the specified element, or MISSING if the element is not present in the tree.
+     *
+     * @param element the element to look up
+     * @return the value of the element, or MISSING if the element is not present in the tree
+     */
+    int get(int element) {
+        if (root == null)
+            return MISSING;
+        Node node = root;
+        while (node instanceof Branch branch)
+            node = branch.children[branch.childIndex(comparator, element)];
+        Leaf leaf = (Leaf) node;
+        int index = leaf.search(comparator, element);
+        return index < 0 ? MISSING : leaf.values[index];
+    }
+
+    /**
+     * Returns the element at the specified position in ascending order.
+     *
+     * @param index the position of the element
+     * @return the element at the position
+     * @throws IndexOutOfBoundsException if the position is not in the tree
+     */
+    int element(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(index);
+        Node node = root;
+        while (node instanceof Branch branch) {
+            int child = 0;
+            while (index >= branch.sizes[child])
+                index -= branch.sizes[child++];
+            node = branch.children[child];
+        }
+        return ((Leaf) node).elements[index];
+    }
+
+    /**
+     * Returns the number of elements that lie before a position in ascending order. The position is described by
+     * a probe that returns a negative number for the elements before it and a non-negative number for the others,
+     * so the elements before the position must form a prefix of the tree.
+     *
+     * @param probe the function that tells whether an element lies before the position
+     * @return the number of elements before the position
+     */
+    int headSize(IntUnaryOperator probe) {
+        int count = 0;
+        Node node = root;
+        while (node instanceof Branch branch) {
+            int before = countBefore(branch.firsts, branch.firsts.length, probe);
+            if (before == 0)
+                return count;
+            for (int child = 0; child < before - 1; child++)
+                count += branch.sizes[child];
+            node = branch.children[before - 1];
+        }
+        return node == null ? count : count + countBefore(((Leaf) node).elements, node.length(), probe);
+    }
+
+    /**
+     * Returns the number of elements in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    int size() {
+        return root == null ? 0 : root.size();
+    }
+
+    /**
+     * Returns a cursor over the elements in ascending order, positioned before the element at the specified
+     * position. The position is found in O(log n), so skipped elements are not visited.
+     *
+     * @param index the position of the first element to visit
+     * @return a new cursor
+     */
+    Cursor cursor(int index) {
+        return new Cursor(index, false);
+    }
+
+    /**
+     * Returns a cursor over the elements in descending order, positioned after the greatest element.
+     *
+     * @return a new cursor
+     */
+    Cursor descendingCursor() {
+        return new Cursor(size() - 1, true);
+    }
+
+    private PersistentIntTree insert(int element, int value, boolean valued) {
+        if (root == null)
+            return new PersistentIntTree(comparator, new Leaf(new int[]{element}, valued ? new int[]{value} : null));
+        Node[] split = new Node[1];
+        Node newRoot = insert(root, element, value, valued, split);
+        if (newRoot == root)
+            return this;
+        if (split[0] != null)
+            newRoot = new Branch(new Node[]{newRoot, split[0]});
+        return new PersistentIntTree(comparator, newRoot);
+    }
+
+    /**
+     * Adds the element to the subtree. If the new node overflows, its upper part is returned through split.
+     */
+    private Node insert(Node node, int element, int value, boolean valued, Node[] split) {
+        if (node instanceof Leaf leaf) {
+            int index = leaf.search(comparator, element);
+            if (index >= 0) {
+                if (!valued || leaf.values[index] == value)
+                    return leaf;
+                int[] values = leaf.values.clone();
+                values[index] = value;
+                return new Leaf(leaf.elements, values);
+            }
+            index = -index - 1;
+            int[] elements = insertAt(leaf.elements, index, element);
+            int[] values = valued ? insertAt(leaf.values, index, value) : null;
+            if (elements.length <= CAPACITY)
+                return new Leaf(elements, values);
+            int middle = splitPoint(index, elements.length);
+            split[0] = new Leaf(Arrays.copyOfRange(elements, middle, elements.length),
+                    valued ? Arrays.copyOfRange(values, middle, values.length) : null);
+            return new Leaf(Arrays.copyOf(elements, middle), valued ? Arrays.copyOf(values, middle) : null);
+        }
+        Branch branch = (Branch) node;
+        int index = branch.childIndex(comparator, element);
+        Node child = insert(branch.children[index], element, value, valued, split);
+        if (child == branch.children[index])
+            return branch;
+        Node[] children;
+        if (split[0] == null) {
+            children = branch.children.clone();
+        } else {
+            children = insertAt(branch.children, index + 1, split[0]);
+            split[0] = null;
+        }
+        children[index] = child;
+        if (children.length <= CAPACITY)
+            return new Branch(children);
+        int middle = splitPoint(index + 1, children.length);
+        split[0] = new Branch(Arrays.copyOfRange(children, middle, children.length));
+        return new Branch(Arrays.copyOf(children, middle));
+    }
+
+    /**
+     * Removes the element from the subtree. The returned node may be underfull or empty; the parent merges it.
+     */
+    private Node remove(Node node, int element) {
+        if (node instanceof Leaf leaf) {
+            int index = leaf.search(comparator, element);
+            if (index < 0)
+                return leaf;
+            return new Leaf(removeAt(leaf.elements, index), leaf.values == null ? null : removeAt(leaf.values, index));
+        }
+        Branch branch = (Branch) node;
+        int index = branch.childIndex(comparator, element);
+        Node child = remove(branch.children[index], element);
+        if (child == branch.children[index])
+            return branch;
+        if (child.length() == 0)
+            return new Branch(removeAt(branch.children, index));
+        Node[] children = branch.children.clone();
+        children[index] = child;
+        if (child.length() >= MIN_LENGTH || children.length == 1)
+            return new Branch(children);
+        int left = index == 0 ? 0 : index - 1;
+        Node[] merged = merge(children[left], children[left + 1]);
+        Node[] result = new Node[children.length - 2 + merged.length];
+        System.arraycopy(children, 0, result, 0, left);
+        System.arraycopy(merged, 0, result, left, merged.length);
+        System.arraycopy(children, left + 2, result, left + merged.length, children.length - left - 2);
+        return new Branch(result);
+    }
+
+    /**
+     * Joins two neighbouring nodes of the same height into one, or into two halves if they do not fit into one.
+     */
+    private static Node[] merge(Node first, Node second) {
+        if (first instanceof Leaf left) {
+            Leaf right = (Leaf) second;
+            int[] elements = concat(left.elements, right.elements);
+            int[] values = left.values == null ? null : concat(left.values, right.values);
+            if (elements.length <= CAPACITY)
+                return new Node[]{new Leaf(elements, values)};
+            int middle = elements.length / 2;
+            return new Node[]{
+                    new Leaf(Arrays.copyOf(elements, middle), values == null ? null : Arrays.copyOf(values, middle)),
+                    new Leaf(Arrays.copyOfRange(elements, middle, elements.length),
+                            values == null ? null : Arrays.copyOfRange(values, middle, values.length))};
+        }
+        Node[] left = ((Branch) first).children;
+        Node[] right = ((Branch) second).children;
+        Node[] children = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, children, left.length, right.length);
+        if (children.length <= CAPACITY)
+            return new Node[]{new Branch(children)};
+        int middle = children.length / 2;
+        return new Node[]{new Branch(Arrays.copyOf(children, middle)),
+                new Branch(Arrays.copyOfRange(children, middle, children.length))};
+    }
+
+    /**
+     * Returns where an overflowing node is split. A node that overflowed at one of its ends keeps all but one
+     * entry, so that ascending and descending insertions leave full nodes behind instead of half-empty ones.
+     */
+    private static int splitPoint(int index, int length) {
+        if (index == length - 1)
+            return length - 1;
+        if (index == 0)
+            return 1;
+        return length / 2;
+    }
+
+    private static int countBefore(int[] elements, int length, IntUnaryOperator probe) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (probe.applyAsInt(elements[middle]) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private static int[] insertAt(int[] array, int index, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static Node[] insertAt(Node[] array, int index, Node value) {
+        Node[] result = new Node[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static int[] removeAt(int[] array, int index) {
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private static Node[] removeAt(Node[] array, int index) {
+        Node[] result = new Node[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * A cursor over the elements of one version of the tree. It keeps the path to the current leaf,
+     * so moving to the next element costs O(1) amortized.
+     */
+    final class Cursor {
+        private final boolean descending;
+        private final Branch[] branches;
+        private final int[] positions;
+        private Leaf leaf;
+        private int position;
+
+        private Cursor(int index, boolean descending) {
+            this.descending = descending;
+            int height = 0;
+            for (Node node = root; node instanceof Branch branch; node = branch.children[0])
+                height++;
+            branches = new Branch[height];
+            positions = new int[height];
+            if (index < 0 || index >= size())
+                return;
+            Node node = root;
+            for (int level = 0; level < height; level++) {
+                Branch branch = (Branch) node;
+                int child = 0;
+                while (index >= branch.sizes[child])
+                    index -= branch.sizes[child++];
+                branches[level] = branch;
+                positions[level] = child;
+                node = branch.children[child];
+            }
+            leaf = (Leaf) node;
+            position = descending ? index + 1 : index - 1;
+        }
+
+        /**
+         * Moves the cursor to the next element.
+         *
+         * @return true if the cursor points to an element, false if there are no more elements
+         */
+        boolean advance() {
+            if (leaf == null)
+                return false;
+            position += descending ? -1 : 1;
+            if (position >= 0 && position < leaf.elements.length)
+                return true;
+            int level = branches.length - 1;
+            while (level >= 0 && (descending ? positions[level] == 0
+                    : positions[level] == branches[level].children.length - 1))
+                level--;
+            if (level < 0) {
+                leaf = null;
+                return false;
+            }
+            positions[level] += descending ? -1 : 1;
+            Node node = branches[level].children[positions[level]];
+            for (level++; level < branches.length; level++) {
+                Branch branch = (Branch) node;
+                branches[level] = branch;
+                positions[level] = descending ? branch.children.length - 1 : 0;
+                node = branch.children[positions[level]];
+            }
+            leaf = (Leaf) node;
+            position = descending ? leaf.elements.length - 1 : 0;
+            return true;
+        }
+
+        /**
+         * Returns the current element.
+         *
+         * @return the current element
+         */
+        int element() {
+            return leaf.elements[position];
+        }
+
+        /**
+         * Returns the value of the current element.
+         *
+         * @return the value of the current element
+         */
+        int value() {
+            return leaf.values[position];
+        }
+    }
+
+    private abstract static class Node {
+        abstract int size();
+
+        abstract int length();
+
+        abstract int first();
+    }
+
+    private static final class Leaf extends Node {
+        private final int[] elements;
+        private final int[] values;
+
+        private Leaf(int[] elements, int[] values) {
+            this.elements = elements;
+            this.values = values;
+        }
+
+        /**
+         * Returns the position of the element, or -(insertion point) - 1 if it is not present.
+         */
+        private int search(IntBinaryOperator comparator, int element) {
+            int low = 0;
+            int high = elements.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int result = comparator.applyAsInt(elements[middle], element);
+                if (result < 0)
+                    low = middle + 1;
+                else if (result > 0)
+                    high = middle - 1;
+                else
+                    return middle;
+            }
+            return -low - 1;
+        }
+
+        @Override
+        int size() {
+            return elements.length;
+        }
+
+        @Override
+        int length() {
+            return elements.length;
+        }
+
+        @Override
+        int first() {
+            return elements[0];
+        }
+    }
+
+    private static final class Branch extends Node {
+        private final Node[] children;
+        private final int[] firsts;
+        private final int[] sizes;
+        private final int size;
+
+        private Branch(Node[] children) {
+            this.children = children;
+            this.firsts = new int[children.length];
+            this.sizes = new int[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; i++) {
+                firsts[i] = children[i].first();
+                sizes[i] = children[i].size();
+                total += sizes[i];
+            }
+            this.size = total;
+        }
+
+        /**
+         * Returns the position of the child whose range contains the element.
+         */
+        private int childIndex(IntBinaryOperator comparator, int element) {
+            int low = 1;
+            int high = firsts.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (comparator.applyAsInt(firsts[middle], element) <= 0)
+                    low = middle + 1;
+                else
+                    high = middle - 1;
+            }
+            return low - 1;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        int length() {
+            return children.length;
+        }
+
+        @Override
+        int first() {
+            return firsts[0];
+        }
+    }
+}
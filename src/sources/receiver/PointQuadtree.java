@@ -0,0 +1,350 @@
+package sources.receiver;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * The PointQuadtree class is an immutable spatial index of int IDs placed at int (x, y) points. It is a bucket PR
+ * quadtree over the whole int plane: a leaf holds up to a fixed number of points and splits into four equal
+ * quadrants when it overflows, and quadrants merge back when they shrink. Any number of IDs may share one point.
+ * <p>
+ * Adding or removing a point copies only the nodes on its path and returns a new tree that shares all other nodes
+ * with the old one, so a version never changes and may be read by any number of threads without locking.
+ * Range queries only descend into quadrants that intersect the box, and nearest-neighbour queries visit
+ * quadrants in order of their distance to the query point, so both cost about O(log n) plus the size of the answer.
+ */
+public final class PointQuadtree {
+    private static final int LEAF_CAPACITY = 8;
+    private static final int ROOT_SIZE_LOG = 32;
+    private static final PersistentIntTree NO_IDS = new PersistentIntTree(Integer::compare);
+
+    private final Node root;
+
+    /**
+     * Constructs an empty PointQuadtree.
+     */
+    public PointQuadtree() {
+        this(null);
+    }
+
+    private PointQuadtree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns a tree that contains the points of this tree and the ID at the specified point.
+     *
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param id the ID to add
+     * @return the new version of the tree
+     */
+    public PointQuadtree with(int x, int y, int id) {
+        return new PointQuadtree(add(root, Integer.MIN_VALUE, Integer.MIN_VALUE, ROOT_SIZE_LOG, x, y, id));
+    }
+
+    /**
+     * Returns a tree that contains the points of this tree except the ID at the specified point.
+     *
+     * @param x the x coordinate of the point the ID was added at
+     * @param y the y coordinate of the point the ID was added at
+     * @param id the ID to remove
+     * @return the new version of the tree, or this tree if the ID is not present at the point
+     */
+    public PointQuadtree without(int x, int y, int id) {
+        Node newRoot = remove(root, x, y, id);
+        return newRoot == root ? this : new PointQuadtree(newRoot);
+    }
+
+    /**
+     * Returns the number of IDs in the index.
+     *
+     * @return the number of IDs in the index
+     */
+    public int size() {
+        return root == null ? 0 : root.count;
+    }
+
+    /**
+     * Returns the IDs of all points inside the box, borders included, in ascending order.
+     *
+     * @param minX the lowest x coordinate of the box
+     * @param minY the lowest y coordinate of the box
+     * @param maxX the greatest x coordinate of the box
+     * @param maxY the greatest y coordinate of the box
+     * @return the IDs of the points in the box
+     */
+    public int[] findInBox(int minX, int minY, int maxX, int maxY) {
+        IdBuffer result = new IdBuffer();
+        collectInBox(root, minX, minY, maxX, maxY, result);
+        int[] ids = result.toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns the IDs of the k points closest to the specified point by Euclidean distance, nearest first.
+     * IDs at the same distance are ordered by ID.
+     *
+     * @param x the x coordinate of the query point
+     * @param y the y coordinate of the query point
+     * @param k the maximum number of IDs to return
+     * @return the IDs of at most k nearest points
+     */
+    public int[] findNearest(int x, int y, int k) {
+        if (k <= 0 || root == null)
+            return new int[0];
+        PriorityQueue<Candidate> best = new PriorityQueue<>(
+                (first, second) -> second.compareTo(first));
+        PriorityQueue<Pending> pending = new PriorityQueue<>(
+                (first, second) -> Double.compare(first.distance, second.distance));
+        pending.add(new Pending(root, 0));
+        while (!pending.isEmpty()) {
+            Pending next = pending.poll();
+            if (best.size() == k && next.distance > best.peek().distance)
+                break;
+            Node node = next.node;
+            if (node.ids != null) {
+                PersistentIntTree.Cursor cursor = node.ids.cursor(0);
+                while (cursor.advance())
+                    offer(best, k, new Candidate(next.distance, cursor.element()));
+            } else if (node.children == null) {
+                for (int i = 0; i < node.count; i++)
+                    offer(best, k, new Candidate(distance(x, y, node.x(i), node.y(i)), node.id(i)));
+            } else {
+                for (Node child : node.children) {
+                    if (child != null)
+                        pending.add(new Pending(child, child.distanceTo(x, y)));
+                }
+            }
+        }
+        int[] ids = new int[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().id;
+        }
+        return ids;
+    }
+
+    private static void offer(PriorityQueue<Candidate> best, int k, Candidate candidate) {
+        if (best.size() < k) {
+            best.add(candidate);
+        } else if (candidate.compareTo(best.peek()) < 0) {
+            best.poll();
+            best.add(candidate);
+        }
+    }
+
+    private static void collectInBox(Node node, int minX, int minY, int maxX, int maxY, IdBuffer result) {
+        if (node == null || !node.intersects(minX, minY, maxX, maxY))
+            return;
+        if (node.ids != null) {
+            PersistentIntTree.Cursor cursor = node.ids.cursor(0);
+            while (cursor.advance())
+                result.add(cursor.element());
+        } else if (node.children == null) {
+            for (int i = 0; i < node.count; i++) {
+                if (node.x(i) >= minX && node.x(i) <= maxX && node.y(i) >= minY && node.y(i) <= maxY)
+                    result.add(node.id(i));
+            }
+        } else {
+            for (Node child : node.children) {
+                collectInBox(child, minX, minY, maxX, maxY, result);
+            }
+        }
+    }
+
+    /**
+     * Adds the ID at the point to the subtree of the quadrant with the specified corner and size,
+     * which is empty if the node is null.
+     */
+    private static Node add(Node node, long minX, long minY, int sizeLog, int x, int y, int id) {
+        if (sizeLog == 0) {
+            PersistentIntTree ids = node == null ? NO_IDS : node.ids;
+            PersistentIntTree newIds = ids.with(id);
+            return newIds == ids ? node : new Node(minX, minY, 0, newIds.size(), null, null, newIds);
+        }
+        if (node == null)
+            return new Node(minX, minY, sizeLog, 1, null, new int[]{x, y, id}, null);
+        if (node.children == null) {
+            int[] points = Arrays.copyOf(node.points, node.points.length + 3);
+            points[node.points.length] = x;
+            points[node.points.length + 1] = y;
+            points[node.points.length + 2] = id;
+            if (node.count < LEAF_CAPACITY)
+                return new Node(minX, minY, sizeLog, node.count + 1, null, points, null);
+            Node branch = new Node(minX, minY, sizeLog, 0, new Node[4], null, null);
+            for (int i = 0; i < points.length; i += 3)
+                branch = add(branch, minX, minY, sizeLog, points[i], points[i + 1], points[i + 2]);
+            return branch;
+        }
+        int index = node.childIndex(x, y);
+        long half = 1L << (sizeLog - 1);
+        Node child = add(node.children[index], minX + (index & 1) * half, minY + (index >> 1) * half,
+                sizeLog - 1, x, y, id);
+        if (child == node.children[index])
+            return node;
+        Node[] children = node.children.clone();
+        children[index] = child;
+        return new Node(minX, minY, sizeLog, node.count + child.count - countOf(node.children[index]),
+                children, null, null);
+    }
+
+    /**
+     * Removes the ID at the point from the subtree. Returns the node itself if the ID is not there,
+     * and null if the subtree becomes empty.
+     */
+    private static Node remove(Node node, int x, int y, int id) {
+        if (node == null)
+            return null;
+        if (node.ids != null) {
+            PersistentIntTree newIds = node.ids.without(id);
+            if (newIds == node.ids)
+                return node;
+            return newIds.size() == 0 ? null
+                    : new Node(node.minX, node.minY, 0, newIds.size(), null, null, newIds);
+        }
+        if (node.children == null) {
+            int index = node.indexOf(x, y, id);
+            if (index < 0)
+                return node;
+            if (node.count == 1)
+                return null;
+            int[] points = new int[node.points.length - 3];
+            System.arraycopy(node.points, 0, points, 0, 3 * index);
+            System.arraycopy(node.points, 3 * index + 3, points, 3 * index, points.length - 3 * index);
+            return new Node(node.minX, node.minY, node.sizeLog, node.count - 1, null, points, null);
+        }
+        int index = node.childIndex(x, y);
+        Node child = remove(node.children[index], x, y, id);
+        if (child == node.children[index])
+            return node;
+        Node[] children = node.children.clone();
+        children[index] = child;
+        int count = node.count - 1;
+        if (count > LEAF_CAPACITY)
+            return new Node(node.minX, node.minY, node.sizeLog, count, children, null, null);
+        IdBuffer points = new IdBuffer();
+        for (Node remaining : children)
+            collectPoints(remaining, points);
+        return new Node(node.minX, node.minY, node.sizeLog, count, null, points.toArray(), null);
+    }
+
+    private static void collectPoints(Node node, IdBuffer points) {
+        if (node == null)
+            return;
+        if (node.ids != null) {
+            PersistentIntTree.Cursor cursor = node.ids.cursor(0);
+            while (cursor.advance()) {
+                points.add((int) node.minX);
+                points.add((int) node.minY);
+                points.add(cursor.element());
+            }
+        } else if (node.children == null) {
+            for (int point : node.points)
+                points.add(point);
+        } else {
+            for (Node child : node.children)
+                collectPoints(child, points);
+        }
+    }
+
+    private static int countOf(Node node) {
+        return node == null ? 0 : node.count;
+    }
+
+    private static double distance(long x1, long y1, long x2, long y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * A square quadrant of the plane. Leaves keep their points in one array of (x, y, id) triples, and inner
+     * nodes keep their four quadrants, null for the empty ones, and count their points. A quadrant of a single
+     * point keeps the IDs at the point in a tree instead, since any number of them may share it.
+     */
+    private static final class Node {
+        private final long minX;
+        private final long minY;
+        private final int sizeLog;
+        private final int count;
+        private final Node[] children;
+        private final int[] points;
+        private final PersistentIntTree ids;
+
+        private Node(long minX, long minY, int sizeLog, int count, Node[] children, int[] points, PersistentIntTree ids) {
+            this.minX = minX;
+            this.minY = minY;
+            this.sizeLog = sizeLog;
+            this.count = count;
+            this.children = children;
+            this.points = points;
+            this.ids = ids;
+        }
+
+        private int x(int index) {
+            return points[3 * index];
+        }
+
+        private int y(int index) {
+            return points[3 * index + 1];
+        }
+
+        private int id(int index) {
+            return points[3 * index + 2];
+        }
+
+        private int childIndex(int x, int y) {
+            long half = 1L << (sizeLog - 1);
+            return (x >= minX + half ? 1 : 0) | (y >= minY + half ? 2 : 0);
+        }
+
+        private int indexOf(int x, int y, int id) {
+            for (int i = 0; i < count; i++) {
+                if (id(i) == id && x(i) == x && y(i) == y)
+                    return i;
+            }
+            return -1;
+        }
+
+        private boolean intersects(int boxMinX, int boxMinY, int boxMaxX, int boxMaxY) {
+            long side = 1L << sizeLog;
+            return boxMaxX >= minX && boxMinX < minX + side && boxMaxY >= minY && boxMinY < minY + side;
+        }
+
+        private double distanceTo(int x, int y) {
+            long maxX = minX + (1L << sizeLog) - 1;
+            long maxY = minY + (1L << sizeLog) - 1;
+            return distance(x, y, Math.max(minX, Math.min(x, maxX)), Math.max(minY, Math.min(y, maxY)));
+        }
+    }
+
+    private record Pending(Node node, double distance) {
+    }
+
+    private record Candidate(double distance, int id) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate other) {
+            int distanceCompare = Double.compare(distance, other.distance);
+            return distanceCompare != 0 ? distanceCompare : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * A growable array of ints.
+     */
+    private static final class IdBuffer {
+        private int[] ids = new int[16];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
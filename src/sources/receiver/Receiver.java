@@ -2,8 +2,8 @@ package sources.receiver;
 
 import sources.IOHandlers.receiver.MovieCollectionFileReader;
 import sources.IOHandlers.receiver.MovieCollectionFileWriter;
-import sources.IOHandlers.receiver.MovieCollectionXMLFileReader;
-import sources.IOHandlers.receiver.MovieCollectionXMLFileWriter;
+import sources.IOHandlers.receiver.MovieCollectionStreamingXMLFileWriter;
+import sources.IOHandlers.receiver.ReaderMode;
 import sources.exceptions.io.CustomIOException;
 import sources.exceptions.io.FilePermissionException;
 import sources.exceptions.io.InvalidFileDataException;
@@ -15,18 +15,21 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
 
 /**
  * The Receiver class is responsible for managing the movie collection. It uses MovieCollection
  * to store the movies and MovieCollectionFileReader/MovieCollectionFileWriter to read/write the
- * movies from/to the XML file.
+ * movies from/to the XML file. A Receiver may be shared between threads, since every collection
+ * operation it performs is atomic.
  */
 public class Receiver {
     private final MovieCollection movieCollection;
     MovieCollectionFileReader xmlFileReader;
     MovieCollectionFileWriter xmlFileWriter;
+    private MovieCollectionSnapshot showSnapshot;
+    private int showPosition;
+    private int showLimit;
 
     /**
      * Creates a new Receiver instance and initializes the collection of movies from a file.
@@ -39,31 +42,90 @@ public class Receiver {
         String path = System.getenv("LAB5");
         checkFile(path);
 
-        this.xmlFileReader = new MovieCollectionXMLFileReader(path);
-        this.xmlFileWriter = new MovieCollectionXMLFileWriter(path);
+        this.xmlFileReader = readReaderMode().createReader(path, readStorageMode(), readMappedInput());
+        this.xmlFileWriter = new MovieCollectionStreamingXMLFileWriter(path);
 
         this.movieCollection = xmlFileReader.read();
     }
 
     /**
-     * Returns information about the collection.
+     * Returns information about the collection. All figures are maintained by the collection, so the cost
+     * does not depend on the number of elements.
      *
      * @return a String containing information about the collection
      */
     public String info() {
+        MovieCollectionSnapshot snapshot = movieCollection.snapshot();
+        MovieStatistics statistics = snapshot.getStatistics();
+        DirectorDictionary directorDictionary = movieCollection.getDirectorDictionary();
+        StringJoiner genreCounts = new StringJoiner(", ");
+        for (MovieGenre movieGenre : MovieGenre.values()) {
+            genreCounts.add(movieGenre + "=" + statistics.getCount(movieGenre));
+        }
+        StringJoiner mpaaRatingCounts = new StringJoiner(", ");
+        for (MpaaRating mpaaRating : MpaaRating.values()) {
+            mpaaRatingCounts.add(mpaaRating + "=" + statistics.getCount(mpaaRating));
+        }
+        String oscarsCount = statistics.getSize() == 0 ? "no elements" :
+                "total " + statistics.getOscarsCountTotal() +
+                ", min " + statistics.getOscarsCountMin() +
+                ", max " + statistics.getOscarsCountMax() +
+                ", mean " + String.format(Locale.ROOT, "%.2f", statistics.getOscarsCountMean());
         return "*Collection info*\n" +
                 "- Type of collection   : Hashmap of Movies\n" +
-                "- Date of initializing : " + movieCollection.getCreationDate().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss")) + "\n" +
-                "- Number of elements   : " + movieCollection.length();
+                "- Date of initializing : " + snapshot.getCreationDate().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss")) + "\n" +
+                "- Number of elements   : " + statistics.getSize() + "\n" +
+                "- Elements by genre    : " + genreCounts + "\n" +
+                "- Elements by rating   : " + mpaaRatingCounts + "\n" +
+                "- Oscars count         : " + oscarsCount + "\n" +
+                "- Distinct directors   : " + directorDictionary.size() + " (" +
+                directorDictionary.getSharedReferences() + " shared, ~" +
+                directorDictionary.getBytesSaved() + " bytes saved)";
+    }
+
+    /**
+     * Returns the movies in the collection ordered by key, as of the current snapshot.
+     *
+     * @return a page with all the movies in the collection ordered by key
+     */
+    public MoviePage show() {
+        MovieCollectionSnapshot snapshot = movieCollection.snapshot();
+        return new MoviePage(snapshot, 0, snapshot.size());
+    }
+
+    /**
+     * Returns a page of the movies in the collection ordered by key and remembers where it ended,
+     * so that the following pages can be requested with {@link #next()}.
+     *
+     * @param offset the number of movies with the lowest keys to skip
+     * @param limit the maximum number of movies on a page
+     * @return the first page of movies
+     */
+    public synchronized MoviePage show(int offset, int limit) {
+        showSnapshot = movieCollection.snapshot();
+        showPosition = offset;
+        showLimit = limit;
+        return next();
     }
 
     /**
-     * Returns the HashMap of movies in the collection.
+     * Returns the page of movies that follows the page returned last by {@link #show(int, int)} or this method.
+     * Pages come from the snapshot the listing started on, so modifications made in between neither shift
+     * nor repeat movies. The snapshot is let go once the last page has been returned, so that it does not keep
+     * retired rows from being reused. Returns an empty page if there is no listing in progress.
      *
-     * @return the HashMap of movies in the collection
+     * @return the next page of movies
      */
-    public HashMap<Integer, Movie> show() {
-        return movieCollection.getMovieHashMap();
+    public synchronized MoviePage next() {
+        if (showSnapshot == null) {
+            MovieCollectionSnapshot snapshot = movieCollection.snapshot();
+            return new MoviePage(snapshot, snapshot.size(), 0);
+        }
+        MoviePage moviePage = new MoviePage(showSnapshot, showPosition, showLimit);
+        showPosition += moviePage.size();
+        if (!moviePage.hasMore())
+            showSnapshot = null;
+        return moviePage;
     }
 
     /**
@@ -88,13 +150,38 @@ public class Receiver {
                        String passportID) throws CollectionKeyException, WrongArgumentException {
         if (movieCollection.getElementByKey(key) != null)
             throw new CollectionKeyException("key already exists");
-        Movie movie = new Movie(movieName, new Coordinates(x, y), oscarsCount, movieGenre,
-                mpaaRating, new Person(directorName, birthday, weight, passportID));
-        movie.setID();
-        movieCollection.put(key, movie);
+        Movie movie = new Movie(movieCollection.allocateID(), movieName, new Coordinates(x, y), oscarsCount, movieGenre,
+                mpaaRating, movieCollection.internDirector(new Person(directorName, birthday, weight, passportID)));
+        if (!movieCollection.putIfAbsent(key, movie))
+            throw new CollectionKeyException("key already exists");
         System.out.println("*element added successfully*");
     }
 
+    /**
+     * Inserts a batch of new movies into the collection in one pass. All keys are checked before any movie
+     * is added, equal directors within the batch share one instance, and a single summary is printed
+     * instead of a message per movie.
+     *
+     * @param movies the new movies without IDs, mapped by their keys
+     * @throws CollectionKeyException if any of the keys is already in use
+     * @throws WrongArgumentException if the passport ID of a director belongs to another director
+     */
+    public void insertAll(Map<Integer, Movie> movies) throws CollectionKeyException, WrongArgumentException {
+        MovieCollectionSnapshot snapshot = movieCollection.snapshot();
+        for (Integer key : movies.keySet()) {
+            if (snapshot.containsKey(key))
+                throw new CollectionKeyException("key " + key + " already exists");
+        }
+        HashMap<Person, Person> directors = new HashMap<>();
+        for (Movie movie : movies.values()) {
+            movie.setID(movieCollection.allocateID());
+            movie.setDirector(directors.computeIfAbsent(movie.getDirector(), movieCollection::internDirector));
+        }
+        if (!movieCollection.putAllIfAbsent(movies))
+            throw new CollectionKeyException("key already exists");
+        System.out.println("*" + movies.size() + " elements added successfully*");
+    }
+
     /**
      * Updates the information of the specified movie in the collection.
      *
@@ -115,15 +202,12 @@ public class Receiver {
     public void update(Integer id, String movieName, Integer x, Integer y, long oscarsCount, MovieGenre movieGenre,
                        MpaaRating mpaaRating, String directorName, LocalDateTime birthday, Integer weight,
                        String passportID) throws CollectionKeyException, WrongArgumentException {
-        Movie movie = movieCollection.getElementByID(id);
-        if (movie == null)
+        if (movieCollection.getKeyByID(id) == null)
+            throw new CollectionKeyException("id does not exist");
+        Movie movie = new Movie(id, movieName, new Coordinates(x, y), oscarsCount, movieGenre,
+                mpaaRating, movieCollection.internDirector(new Person(directorName, birthday, weight, passportID)));
+        if (!movieCollection.update(movie))
             throw new CollectionKeyException("id does not exist");
-        movie.setName(movieName);
-        movie.setCoordinates(new Coordinates(x, y));
-        movie.setOscarsCount(oscarsCount);
-        movie.setGenre(movieGenre);
-        movie.setMpaaRating(mpaaRating);
-        movie.setDirector(new Person(directorName, birthday, weight, passportID));
         System.out.println("*element updated successfully*");
     }
 
@@ -134,9 +218,8 @@ public class Receiver {
      * @throws CollectionKeyException if the specified key does not exist in the collection
      */
     public void removeKey(Integer key) throws CollectionKeyException {
-        if (movieCollection.getElementByKey(key) == null)
+        if (!movieCollection.remove(key))
             throw new CollectionKeyException("key does not exist");
-        movieCollection.remove(key);
         System.out.println("*element removed successfully*");
     }
 
@@ -211,10 +294,9 @@ public class Receiver {
         if (movieCollection.getElementByKey(key) == null)
             throw new CollectionKeyException("key does not exist");
         Movie movie = new Movie(movieName, new Coordinates(x, y), oscarsCount, movieGenre,
-                mpaaRating, new Person(directorName, birthday, weight, passportID));
+                mpaaRating, movieCollection.internDirector(new Person(directorName, birthday, weight, passportID)));
         boolean replaced = movieCollection.replaceIfLowe(key, movie);
         if (replaced) {
-            movie.setID();
             System.out.println("*element replaced successfully*");
         } else {
             System.out.println("*element was not replaced*");
@@ -237,30 +319,137 @@ public class Receiver {
     }
 
     /**
-     Returns a list of movies in ascending order based on their natural order in the movie collection.
+     Returns the movies in ascending order based on their natural order in the movie collection.
 
-     @return a list of movies in ascending order
+     @return a read-only view of the movies in ascending order
      */
-    public List<Movie> printAscending() {
-        return movieCollection.printAscending();
+    public Collection<Movie> printAscending() {
+        return movieCollection.snapshot().getAscending();
     }
 
     /**
-     Returns a list of movies in descending order based on their natural order in the movie collection.
+     Returns the movies in descending order based on their natural order in the movie collection.
 
-     @return a list of movies in descending order
+     @return a read-only view of the movies in descending order
      */
-    public List<Movie> printDescending() {
-        return movieCollection.printDescending();
+    public Collection<Movie> printDescending() {
+        return movieCollection.snapshot().getDescending();
     }
 
     /**
-     Returns a list of movies in descending order based on their Oscars count field in the movie collection.
+     Returns a page of movies in descending order based on their Oscars count field in the movie collection.
 
+     @param limit the maximum number of movies to return
+     @param offset the number of movies with the most Oscars to skip
      @return a list of movies in descending order based on their Oscars count field
      */
-    public List<Movie> printFieldDescendingOscarsCount() {
-        return movieCollection.printFieldDescendingOscarsCount();
+    public List<Movie> printFieldDescendingOscarsCount(int limit, int offset) {
+        return movieCollection.snapshot().getOscarsCountPage(limit, offset);
+    }
+
+    /**
+     Returns the movies that have the specified genre and MPAA rating, ordered by ID.
+
+     @param movieGenre the genre of the movies to return, or null for any genre
+     @param mpaaRating the MPAA rating of the movies to return, or null for any rating
+     @return a list of the matching movies
+     */
+    public List<Movie> filter(MovieGenre movieGenre, MpaaRating mpaaRating) {
+        return movieCollection.filter(movieGenre, mpaaRating);
+    }
+
+    /**
+     Returns the movies whose names start with the specified prefix, ignoring case.
+
+     @param prefix the beginning of the names to look for
+     @return a list of the matching movies in ascending order
+     */
+    public List<Movie> findName(String prefix) {
+        return movieCollection.findByNamePrefix(prefix);
+    }
+
+    /**
+     Returns the movies whose names contain the specified substring, ignoring case.
+
+     @param substring the part of the names to look for
+     @return a list of the matching movies in ascending order
+     */
+    public List<Movie> searchName(String substring) {
+        return movieCollection.findByNameSubstring(substring);
+    }
+
+    /**
+     Returns the movies whose coordinates lie inside the box with the specified corners, ordered by ID.
+
+     @param x1 the x coordinate of one corner of the box
+     @param y1 the y coordinate of one corner of the box
+     @param x2 the x coordinate of the opposite corner of the box
+     @param y2 the y coordinate of the opposite corner of the box
+     @return a list of the movies in the box
+     */
+    public List<Movie> filterInBox(int x1, int y1, int x2, int y2) {
+        return movieCollection.findInBox(x1, y1, x2, y2);
+    }
+
+    /**
+     Returns the k movies whose coordinates are closest to the specified point, nearest first.
+
+     @param x the x coordinate of the point
+     @param y the y coordinate of the point
+     @param k the maximum number of movies to return
+     @return a list of the nearest movies
+     */
+    public List<Movie> nearest(int x, int y, int k) {
+        return movieCollection.findNearest(x, y, k);
+    }
+
+    /**
+     Reads the storage mode of the collection from the LAB5_STORAGE environment variable.
+     Heap storage is used if the variable is not set or holds an unknown mode.
+
+     @return the storage mode to load the collection into
+     */
+    private StorageMode readStorageMode() {
+        String storageModeInput = System.getenv("LAB5_STORAGE");
+        if (storageModeInput == null)
+            return StorageMode.HEAP;
+        try {
+            return StorageMode.valueOf(storageModeInput.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("! unknown storage mode " + storageModeInput + ", heap storage is used !");
+            return StorageMode.HEAP;
+        }
+    }
+
+    /**
+     Reads the way the collection file is read from the LAB5_READER environment variable.
+     The streaming reader is used if the variable is not set or holds an unknown mode, so that the collection
+     is read in constant memory unless another reader is asked for.
+
+     @return the reader mode to read the collection file with
+     */
+    private ReaderMode readReaderMode() {
+        String readerModeInput = System.getenv("LAB5_READER");
+        if (readerModeInput == null)
+            return ReaderMode.STREAMING;
+        try {
+            return ReaderMode.valueOf(readerModeInput.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("! unknown reader mode " + readerModeInput + ", streaming reader is used !");
+            return ReaderMode.STREAMING;
+        }
+    }
+
+    /**
+     Reads from the LAB5_MMAP environment variable whether the collection file is memory-mapped while it is read.
+     A mapping lives until it is garbage collected, and some systems do not let a mapped file be overwritten,
+     so the file is read through buffers unless the variable is set to true.
+
+     @return true if the collection file should be memory-mapped
+     */
+    private boolean readMappedInput() {
+        String mappedInput = System.getenv("LAB5_MMAP");
+        return mappedInput != null && Boolean.parseBoolean(mappedInput.trim());
     }
 
     /**
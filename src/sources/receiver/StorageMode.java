@@ -0,0 +1,34 @@
+package sources.receiver;
+
+/**
+ * The StorageMode enum lists the layouts a MovieCollection can keep its movies in.
+ */
+public enum StorageMode {
+    /**
+     * Movies are kept as objects in a HeapMovieStorage.
+     */
+    HEAP,
+    /**
+     * Movies are kept in primitive columns of a ColumnarMovieStorage.
+     */
+    COLUMNAR,
+    /**
+     * Movies are kept in native memory records of an OffHeapMovieStorage. The heap then holds no object per
+     * movie: the indexes of the collection are int trees and arrays of rows, IDs and coordinates, which cost
+     * about 150 bytes per movie, and directors are kept on the heap once per distinct director.
+     */
+    OFF_HEAP;
+
+    /**
+     * Creates an empty storage of this mode.
+     *
+     * @return a new empty storage
+     */
+    MovieStorage createStorage() {
+        return switch (this) {
+            case HEAP -> new HeapMovieStorage();
+            case COLUMNAR -> new ColumnarMovieStorage();
+            case OFF_HEAP -> new OffHeapMovieStorage();
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package sources.receiver;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The TrigramIndex class maps every three-character substring of indexed texts to the IDs of the texts that
+ * contain it. A text contains a query only if it contains all trigrams of the query, so the IDs under the
+ * rarest trigram of the query are a small superset of the matches, which the caller then verifies.
+ * <p>
+ * The index is immutable. Every trigram gets a dense code the first time it is indexed, and the IDs under a code
+ * are kept in a {@link PersistentIntTree} that sits in a radix trie of 32-way arrays indexed by the code. Adding
+ * or removing a text copies the paths of its trigrams and returns a new index that shares everything else with
+ * the old one, so a version may be read by any number of threads without locking. The codes are shared by all
+ * versions and are never taken back; their number is bounded by the number of distinct trigrams, not of texts.
+ */
+public final class TrigramIndex {
+    /**
+     * The length of the substrings the index is built from. Shorter queries cannot be answered by the index.
+     */
+    public static final int GRAM_LENGTH = 3;
+
+    private static final int LEVEL_BITS = 5;
+    private static final int WIDTH = 1 << LEVEL_BITS;
+    private static final PersistentIntTree NO_IDS = new PersistentIntTree(Integer::compare);
+
+    private final ConcurrentHashMap<String, Integer> codes;
+    private final Object[] root;
+    private final int shift;
+
+    /**
+     * Constructs an empty TrigramIndex.
+     */
+    public TrigramIndex() {
+        this(new ConcurrentHashMap<>(), new Object[WIDTH], 0);
+    }
+
+    private TrigramIndex(ConcurrentHashMap<String, Integer> codes, Object[] root, int shift) {
+        this.codes = codes;
+        this.root = root;
+        this.shift = shift;
+    }
+
+    /**
+     * Returns an index that contains the texts of this index and the specified text under the ID.
+     * Versions derived from one index must be changed by one thread at a time.
+     *
+     * @param text the text to index
+     * @param id the ID of the text
+     * @return the new version of the index
+     */
+    public TrigramIndex with(String text, int id) {
+        TrigramIndex index = this;
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            int code = codes.computeIfAbsent(text.substring(i, i + GRAM_LENGTH), gram -> codes.size());
+            index = index.withPostings(code, index.postings(code).with(id));
+        }
+        return index;
+    }
+
+    /**
+     * Returns an index that contains the texts of this index except the specified text under the ID.
+     *
+     * @param text the text the ID was added with
+     * @param id the ID of the text
+     * @return the new version of the index
+     */
+    public TrigramIndex without(String text, int id) {
+        TrigramIndex index = this;
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            Integer code = codes.get(text.substring(i, i + GRAM_LENGTH));
+            if (code != null)
+                index = index.withPostings(code, index.postings(code).without(id));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the IDs of the texts that may contain the query: the IDs under the rarest trigram of the query.
+     * Every text that contains the query is among them.
+     *
+     * @param query the substring to look for, at least GRAM_LENGTH characters long
+     * @return a superset of the IDs of the texts that contain the query, in ascending order
+     */
+    public int[] getCandidates(String query) {
+        PersistentIntTree candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            Integer code = codes.get(query.substring(i, i + GRAM_LENGTH));
+            PersistentIntTree ids = code == null ? NO_IDS : postings(code);
+            if (candidates == null || ids.size() < candidates.size())
+                candidates = ids;
+        }
+        if (candidates == null)
+            throw new IllegalArgumentException("query is shorter than " + GRAM_LENGTH + " characters");
+        int[] ids = new int[candidates.size()];
+        PersistentIntTree.Cursor cursor = candidates.cursor(0);
+        for (int i = 0; cursor.advance(); i++)
+            ids[i] = cursor.element();
+        return ids;
+    }
+
+    /**
+     * Returns the IDs under the code. Codes beyond the trie, which were assigned after this version, have none.
+     */
+    private PersistentIntTree postings(int code) {
+        if (code >>> shift >= WIDTH)
+            return NO_IDS;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= LEVEL_BITS) {
+            node = (Object[]) node[(code >>> level) & (WIDTH - 1)];
+            if (node == null)
+                return NO_IDS;
+        }
+        PersistentIntTree ids = (PersistentIntTree) node[code & (WIDTH - 1)];
+        return ids == null ? NO_IDS : ids;
+    }
+
+    private TrigramIndex withPostings(int code, PersistentIntTree ids) {
+        if (ids == postings(code))
+            return this;
+        Object[] newRoot = root;
+        int newShift = shift;
+        while (code >>> newShift >= WIDTH) {
+            Object[] grown = new Object[WIDTH];
+            grown[0] = newRoot;
+            newRoot = grown;
+            newShift += LEVEL_BITS;
+        }
+        return new TrigramIndex(codes, set(newRoot, newShift, code, ids.size() == 0 ? null : ids), newShift);
+    }
+
+    private static Object[] set(Object[] node, int level, int code, PersistentIntTree ids) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int slot = (code >>> level) & (WIDTH - 1);
+        copy[slot] = level == 0 ? ids : set((Object[]) copy[slot], level - LEVEL_BITS, code, ids);
+        return copy;
+    }
+}
@@ -0,0 +1,90 @@
+package sources.receiver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The ValueDictionary class assigns dense int codes to distinct values, so that columns can store
+ * a code instead of a reference. Every code counts its references: encoding a value acquires one and
+ * {@link #release(int)} gives it back, and a code whose last reference is released is freed and reused
+ * for the next new value, so the dictionary holds only the values that are still stored.
+ * Values are encoded and released under the lock of the owning collection, but may be decoded by any thread:
+ * the table of values is replaced, not resized in place, and published through a volatile field.
+ *
+ * @param <T> the type of the encoded values
+ */
+public class ValueDictionary<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final HashMap<T, Integer> codes = new HashMap<>();
+    private volatile Object[] values = new Object[DEFAULT_CAPACITY];
+    private int[] references = new int[DEFAULT_CAPACITY];
+    private int[] freeCodes = new int[DEFAULT_CAPACITY];
+    private int freeCodeCount;
+    private int codeCount;
+
+    /**
+     * Returns the code of the specified value and acquires a reference to it, adding the value
+     * to the dictionary if it is not present yet.
+     *
+     * @param value the value to encode, must not be null
+     * @return the code of the value
+     */
+    public int encode(T value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = allocateCode();
+            values[code] = value;
+            codes.put(value, code);
+        }
+        references[code] += 1;
+        return code;
+    }
+
+    /**
+     * Releases a reference to the value with the specified code. The value is removed from the dictionary
+     * and its code freed when no references are left.
+     *
+     * @param code the code of the value
+     */
+    public void release(int code) {
+        references[code] -= 1;
+        if (references[code] > 0)
+            return;
+        codes.remove(values[code]);
+        values[code] = null;
+        if (freeCodeCount == freeCodes.length)
+            freeCodes = Arrays.copyOf(freeCodes, freeCodes.length * 2);
+        freeCodes[freeCodeCount++] = code;
+    }
+
+    /**
+     * Returns the value with the specified code.
+     *
+     * @param code the code of the value
+     * @return the value with the specified code
+     */
+    @SuppressWarnings("unchecked")
+    public T decode(int code) {
+        return (T) values[code];
+    }
+
+    /**
+     * Returns the number of distinct values in the dictionary.
+     *
+     * @return the number of distinct values in the dictionary
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    private int allocateCode() {
+        if (freeCodeCount > 0)
+            return freeCodes[--freeCodeCount];
+        if (codeCount == values.length) {
+            values = Arrays.copyOf(values, codeCount * 2);
+            references = Arrays.copyOf(references, codeCount * 2);
+        }
+        return codeCount++;
+    }
+}